@@ -2,31 +2,213 @@ package com.example.ecommerceorderprocessor.config;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
 
 
 @Component
 @ConfigurationProperties(prefix = "app")
 @Data
 public class AppConfig {
+    private Amqp amqp = new Amqp();
     private CRM crm = new CRM();
+    private Dedup dedup = new Dedup();
     private Financial financial = new Financial();
+    private Pipeline pipeline = new Pipeline();
+    private Resequencer resequencer = new Resequencer();
+
+    public enum ContainerType {
+        /**
+         * {@link org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer}, supports consumer side batching.
+         */
+        SIMPLE,
+        /**
+         * {@link org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer}, consumers are invoked directly on the client threads.
+         */
+        DIRECT
+    }
+
+    public enum ExportFormat {
+        /**
+         * The compact binary files of typed columns (.fcol).
+         */
+        COLUMNAR,
+        /**
+         * The CSV files with the header row.
+         */
+        CSV
+    }
+
+    public enum FsyncPolicy {
+        /**
+         * Forces every written batch to the disk before its orders are completed.
+         */
+        BATCH,
+        /**
+         * Forces the written batches to the disk at most once per interval, the orders are completed after that.
+         */
+        INTERVAL,
+        /**
+         * Leaves it to the operating system, the orders are completed once written.
+         */
+        NEVER
+    }
+
+    public enum HttpClient {
+        /**
+         * Pooled Apache HttpClient 5 (HTTP/1.1 with keep-alive).
+         */
+        APACHE,
+        /**
+         * JDK {@link java.net.http.HttpClient}, supports HTTP/2.
+         */
+        JDK,
+        /**
+         * Plain {@link java.net.HttpURLConnection} without any tuning.
+         */
+        SIMPLE
+    }
+
+    public enum Ordering {
+        /**
+         * Orders are hashed by orderId onto single-threaded lanes, so the ordering is kept by construction.
+         */
+        LANES,
+        /**
+         * Orders are processed by a thread pool and put back into order by the resequencer.
+         */
+        RESEQUENCER
+    }
+
+    @Data
+    public static class Amqp {
+        @Min(1)
+        private int ackBatchSize = 50;
+        @Min(1)
+        private long ackInterval = 200;
+        @NotNull
+        private AcknowledgeMode acknowledgeMode = AcknowledgeMode.AUTO;
+        @Min(1)
+        private int batchSize = 100;
+        @Min(1)
+        private long batchReceiveTimeout = 100;
+        private boolean consumerBatchEnabled = false;
+        @Min(1)
+        private int concurrentConsumers = 1;
+        @NotNull
+        private ContainerType containerType = ContainerType.SIMPLE;
+        @Min(1)
+        private int prefetch = 250;
+    }
 
     @Data
     public static class Financial {
+        @Min(1)
+        private int batchSize = 500;
         @NotEmpty
         private String fileNamePattern = "fin_orders_{datetime:ddMMyyyyHHmmss}.csv";
+        @NotNull
+        private ExportFormat format = ExportFormat.CSV;
+        @NotNull
+        private FsyncPolicy fsync = FsyncPolicy.BATCH;
+        @NotNull
+        private Duration fsyncInterval = Duration.ofSeconds(1);
+        private boolean journal = true;
+        private boolean manifest = true;
+        @Min(1)
+        private int mappedRecordSize = 256;
         @Min(1)
         private int maxRecordsPerFile = 1000;
+        private boolean memoryMapped = false;
         @NotEmpty
         private String outputDirectory = "./financial-output";
+        private String partitionPattern;
+        private boolean seal = false;
+        @Min(1)
+        private int sealQueueCapacity = 100;
+        @Min(1)
+        private int sealThreads = 1;
+        private List<String> shardDirectories;
+        @Min(1)
+        private int shards = 1;
     }
 
     @Data
     public static class CRM {
         @NotEmpty
         private String apiUrl = "http://localhost:4010";
+        @NotNull
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private boolean http2 = false;
+        @NotNull
+        private HttpClient httpClient = HttpClient.APACHE;
+        @NotNull
+        private Duration keepAlive = Duration.ofSeconds(30);
+        @Min(1)
+        private int maxConnections = 200;
+        @Min(1)
+        private int maxConnectionsPerRoute = 100;
+        @Min(1)
+        private int maxInFlight = 100;
+        @Min(1)
+        private int maxInFlightPerCustomer = 8;
+        @NotNull
+        private Duration readTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Pipeline {
+        private boolean dropStaleOrders = true;
+        @Min(1)
+        private Integer lanes;
+        @Min(1)
+        private int maxInFlight = 1000;
+        @NotNull
+        private Ordering ordering = Ordering.LANES;
+        @Min(1)
+        private int versionTableSize = 262_144;
+        private boolean virtualThreads = false;
+
+        /**
+         * @return the number of lanes, if not set: one per available processor, or one per order in flight when the
+         * lanes run on virtual threads (a lane waiting for CRM costs next to nothing then)
+         */
+        public int getLanes() {
+            if (lanes != null) {
+                return lanes;
+            }
+
+            return virtualThreads ? maxInFlight : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Data
+    public static class Resequencer {
+        @NotNull
+        private Duration groupTtl = Duration.ofMinutes(10);
+        @NotNull
+        private Duration maxWait = Duration.ofMillis(200);
+        @NotNull
+        private DataSize memoryBudget = DataSize.ofMegabytes(64);
+        private String spillDirectory;
+        @Min(1)
+        private int stripes = 64;
+    }
+
+    @Data
+    public static class Dedup {
+        private boolean enabled = true;
+        private String snapshotFile;
+        @NotNull
+        private Duration snapshotInterval = Duration.ofMinutes(1);
+        @Min(1)
+        private int windowSize = 65_536;
     }
 }
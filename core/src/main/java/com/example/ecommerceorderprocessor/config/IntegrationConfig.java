@@ -1,44 +1,101 @@
 package com.example.ecommerceorderprocessor.config;
 
+import com.example.ecommerceorderprocessor.integration.DeliveryAcknowledger;
+import com.example.ecommerceorderprocessor.integration.InFlightLimiter;
+import com.example.ecommerceorderprocessor.integration.OrderBatchSplitter;
+import com.example.ecommerceorderprocessor.integration.OrderCompletionAdvice;
+import com.example.ecommerceorderprocessor.integration.OrderDeduplicator;
+import com.example.ecommerceorderprocessor.integration.OrderFailureHandler;
+import com.example.ecommerceorderprocessor.integration.OrderMessageConverter;
+import com.example.ecommerceorderprocessor.integration.OrderResequencingMessageHandler;
+import com.example.ecommerceorderprocessor.integration.OrderStatusSequencer;
+import com.example.ecommerceorderprocessor.integration.OrderVersionTable;
 import com.example.ecommerceorderprocessor.model.Order;
 import com.example.ecommerceorderprocessor.service.OrderProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.amqp.dsl.Amqp;
+import org.springframework.integration.amqp.dsl.AmqpInboundChannelAdapterSMLCSpec;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.integration.channel.AbstractMessageChannel;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.channel.PartitionedChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.IntegrationFlowBuilder;
+import org.springframework.integration.dsl.MessageProducerSpec;
+import org.springframework.integration.expression.ValueExpression;
 import org.springframework.integration.handler.LoggingHandler;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.TaskScheduler;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @RequiredArgsConstructor
 public class IntegrationConfig {
 
+    private final AppConfig appConfig;
     private final ConnectionFactory connectionFactory;
     private final MessageGroupStore messageStore;
     private final ObjectMapper objectMapper;
     private final CorrelationStrategy orderCorrelationStrategy;
     private final OrderProcessor orderProcessor;
 
+    private static Executor boundedExecutor(int threads, int capacity) {
+        // NB! when the queue is full, the task is executed by the sending thread, which slows down the previous stage
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private Executor stageExecutor() {
+        if (appConfig.getPipeline().isVirtualThreads()) {
+            // the number of the running tasks is limited by the in-flight credits anyway
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+
+        return boundedExecutor(10, appConfig.getPipeline().getMaxInFlight());
+    }
+
     @Bean
-    public IntegrationFlow amqpInbound() {
-        return IntegrationFlow.from(
-                        Amqp.inboundAdapter(connectionFactory, orderCreatedQueue())
-                                .messageConverter(jsonMessageConverter())
-                )
-                .log(LoggingHandler.Level.INFO, "Received order message")
-                .transform(source -> objectMapper.convertValue(source, Order.class))
+    public IntegrationFlow amqpInbound(OrderDeduplicator orderDeduplicator) {
+        IntegrationFlowBuilder flow = IntegrationFlow.from(orderInboundAdapter());
+
+        if (appConfig.getAmqp().isConsumerBatchEnabled()) {
+            // the whole batch is received at once, but the orders are still dispatched to the lanes one by one
+            flow = flow
+                    .log(LoggingHandler.Level.INFO, m -> "Received batch of " + ((List<?>) m.getPayload()).size() + " order messages")
+                    .split(new OrderBatchSplitter());
+        } else {
+            flow = flow.log(LoggingHandler.Level.INFO, "Received order message");
+        }
+
+        if (appConfig.getDedup().isEnabled()) {
+            // NB! before the orders enter the pipeline, so a redelivered order takes no credit
+            flow = flow.filter(Order.class, order -> !orderDeduplicator.isDuplicate(order), e -> e.discardChannel(duplicateOrderChannel()));
+        }
+
+        return flow
                 .log(LoggingHandler.Level.INFO, m -> "Processing order #" + ((Order) m.getPayload()).getOrderId())
                 .channel(orderInputChannel())
                 .get();
@@ -49,36 +106,254 @@ public class IntegrationConfig {
         return new DirectChannel();
     }
 
+    @Bean
+    public DeliveryAcknowledger deliveryAcknowledger(TaskScheduler taskScheduler) {
+        final DeliveryAcknowledger deliveryAcknowledger = new DeliveryAcknowledger(appConfig.getAmqp().getAckBatchSize());
+
+        if (appConfig.getAmqp().getAcknowledgeMode() == AcknowledgeMode.MANUAL) {
+            // acknowledge the tail of the completed deliveries as well, otherwise it waits until the batch is full
+            taskScheduler.scheduleWithFixedDelay(deliveryAcknowledger::flush, Duration.ofMillis(appConfig.getAmqp().getAckInterval()));
+        }
+
+        return deliveryAcknowledger;
+    }
+
+    @Bean
+    public MessageChannel discardedOrderChannel() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public IntegrationFlow discardedOrderFlow(DeliveryAcknowledger deliveryAcknowledger) {
+        // the order has been taken out of the pipeline before it was processed, so it fails
+        return IntegrationFlow.from(discardedOrderChannel())
+                .log(LoggingHandler.Level.WARN, m -> "Discarded order #" + ((Order) m.getPayload()).getOrderId() + " with status " + ((Order) m.getPayload()).getStatus())
+                .handle(orderFailureHandler(deliveryAcknowledger))
+                .get();
+    }
+
+    @Bean
+    public MessageChannel duplicateOrderChannel() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public IntegrationFlow duplicateOrderFlow(DeliveryAcknowledger deliveryAcknowledger) {
+        // the duplicate has not entered the pipeline, so only its message is acknowledged (manual acknowledge mode)
+        return IntegrationFlow.from(duplicateOrderChannel())
+                .log(LoggingHandler.Level.INFO, m -> "Dropped duplicate order #" + ((Order) m.getPayload()).getOrderId() + " with status " + ((Order) m.getPayload()).getStatus())
+                .handle(message -> deliveryAcknowledger.orderCompleted(message, true))
+                .get();
+    }
+
     @Bean
     public MessageChannel financialOutputChannel() {
         return new DirectChannel();
     }
 
+    @Bean
+    public MessageChannel inboundErrorChannel() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public IntegrationFlow inboundErrorFlow(DeliveryAcknowledger deliveryAcknowledger) {
+        // the deliveries failed on the consumer thread, before they entered the pipeline (e.g. not converted), so
+        // they have not taken a credit or have returned it already when their send failed
+        return IntegrationFlow.from(inboundErrorChannel())
+                .log(LoggingHandler.Level.ERROR, m -> "Failed to receive the order message: " + m.getPayload())
+                .handle(new OrderFailureHandler(List.of(deliveryAcknowledger)))
+                .get();
+    }
+
+    @Bean
+    public InFlightLimiter inFlightLimiter() {
+        if (appConfig.getPipeline().getOrdering() == AppConfig.Ordering.RESEQUENCER) {
+            // the orders recovered by the resequencer are completed like the others
+            return new InFlightLimiter(appConfig.getPipeline().getMaxInFlight(), messageStore.getMessageCountForAllMessageGroups());
+        }
+
+        return new InFlightLimiter(appConfig.getPipeline().getMaxInFlight());
+    }
+
     @Bean
     public Jackson2JsonMessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
 
+    @Bean
+    @ConditionalOnProperty(prefix = "app.pipeline", name = "ordering", havingValue = "lanes", matchIfMissing = true)
+    public IntegrationFlow laneFlow() {
+        // the lanes are already keeping the order per orderId, so no resequencing is needed
+        return IntegrationFlow.from(orderInputChannel())
+                .channel(processedOrderChannel())
+                .get();
+    }
+
     @Bean
     public Queue orderCreatedQueue() {
         return new Queue("orderCreated-queue", true);
     }
 
+    @Bean
+    public OrderDeduplicator orderDeduplicator(TaskScheduler taskScheduler) {
+        final AppConfig.Dedup dedup = appConfig.getDedup();
+        // NB! no snapshot when disabled, the empty fingerprints would overwrite the snapshot of the previous run
+        final Path snapshotFile = dedup.isEnabled() && dedup.getSnapshotFile() != null ? Path.of(dedup.getSnapshotFile()) : null;
+        final OrderDeduplicator orderDeduplicator = new OrderDeduplicator(dedup.getWindowSize(), snapshotFile);
+
+        if (snapshotFile != null) {
+            // the fingerprints are saved on shutdown too, this covers a crash
+            taskScheduler.scheduleWithFixedDelay(orderDeduplicator::snapshot, dedup.getSnapshotInterval());
+        }
+
+        return orderDeduplicator;
+    }
+
     @Bean
     public MessageChannel orderInputChannel() {
-        return new ExecutorChannel(Executors.newFixedThreadPool(10));
+        final AbstractMessageChannel channel;
+
+        if (appConfig.getPipeline().getOrdering() == AppConfig.Ordering.RESEQUENCER) {
+            channel = new ExecutorChannel(stageExecutor());
+        } else {
+            // all the messages of the same order are handled by the same single-threaded lane, one by one
+            final PartitionedChannel partitionedChannel = new PartitionedChannel(appConfig.getPipeline().getLanes(), message -> ((Order) message.getPayload()).getOrderId());
+
+            if (appConfig.getPipeline().isVirtualThreads()) {
+                // every lane is a virtual thread, so thousands of lanes can wait for CRM without tying up platform threads
+                partitionedChannel.setThreadFactory(Thread.ofVirtual().name("order-lane-", 0).factory());
+            }
+
+            channel = partitionedChannel;
+        }
+
+        // the orders are entering the pipeline here, so this is where the consumer is slowed down when the pipeline is full
+        channel.addInterceptor(inFlightLimiter());
+
+        return channel;
+    }
+
+    private MessageProducerSpec<?, ?> orderInboundAdapter() {
+        final AbstractMessageListenerContainer container = orderListenerContainer();
+        final MessageProducerSpec<?, ?> inboundAdapter;
+
+        if (container instanceof DirectMessageListenerContainer directContainer) {
+            inboundAdapter = Amqp.inboundAdapter(directContainer)
+                    .messageConverter(orderMessageConverter());
+        } else {
+            final AmqpInboundChannelAdapterSMLCSpec simpleInboundAdapter = Amqp.inboundAdapter((SimpleMessageListenerContainer) container)
+                    .messageConverter(orderMessageConverter());
+
+            if (appConfig.getAmqp().isConsumerBatchEnabled()) {
+                simpleInboundAdapter.batchMode(AmqpInboundChannelAdapter.BatchMode.EXTRACT_PAYLOADS_WITH_HEADERS);
+            }
+
+            inboundAdapter = simpleInboundAdapter;
+        }
+
+        if (appConfig.getAmqp().getAcknowledgeMode() == AcknowledgeMode.MANUAL) {
+            // NB! the container does not reject the failed deliveries in manual acknowledge mode, they would leave a
+            // gap, which stops the acknowledgements of the channel (the auto mode keeps the rejects of the container)
+            inboundAdapter.errorChannel(inboundErrorChannel());
+        }
+
+        return inboundAdapter;
+    }
+
+    @Bean
+    public AbstractMessageListenerContainer orderListenerContainer() {
+        final AppConfig.Amqp amqp = appConfig.getAmqp();
+
+        final AbstractMessageListenerContainer container;
+
+        if (amqp.getContainerType() == AppConfig.ContainerType.DIRECT) {
+            if (amqp.isConsumerBatchEnabled()) {
+                throw new IllegalStateException("Consumer side batching is supported only by the simple listener container, " +
+                        "please set app.amqp.container-type to simple or disable app.amqp.consumer-batch-enabled");
+            }
+
+            final DirectMessageListenerContainer directContainer = new DirectMessageListenerContainer(connectionFactory);
+            directContainer.setConsumersPerQueue(amqp.getConcurrentConsumers());
+
+            container = directContainer;
+        } else {
+            final SimpleMessageListenerContainer simpleContainer = new SimpleMessageListenerContainer(connectionFactory);
+            simpleContainer.setConcurrentConsumers(amqp.getConcurrentConsumers());
+            simpleContainer.setConsumerBatchEnabled(amqp.isConsumerBatchEnabled());
+            simpleContainer.setBatchSize(amqp.getBatchSize());
+            simpleContainer.setBatchReceiveTimeout(amqp.getBatchReceiveTimeout());
+
+            container = simpleContainer;
+        }
+
+        if (amqp.getAcknowledgeMode() == AcknowledgeMode.MANUAL && amqp.getAckBatchSize() >= amqp.getPrefetch()) {
+            throw new IllegalStateException("The acknowledgement batch size must be less than the prefetch count, " +
+                    "otherwise the consumer stops receiving the messages until the acknowledgements are flushed");
+        }
+
+        container.setQueues(orderCreatedQueue());
+        container.setPrefetchCount(amqp.getPrefetch());
+        container.setAcknowledgeMode(amqp.getAcknowledgeMode());
+
+        return container;
+    }
+
+    @Bean
+    public OrderMessageConverter orderMessageConverter() {
+        // the body is read straight into the order, no intermediate map is built
+        return new OrderMessageConverter(objectMapper);
     }
 
     @Bean
-    public IntegrationFlow processOrderFlow() {
-        return IntegrationFlow.from(processedOrderChannel())
-                .handle(orderProcessor)
+    public IntegrationFlow orderErrorFlow(DeliveryAcknowledger deliveryAcknowledger) {
+        // the orders failed on the asynchronous stages (logged by the default subscriber of the error channel)
+        return IntegrationFlow.from(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+                .handle(orderFailureHandler(deliveryAcknowledger))
+                .get();
+    }
+
+    private OrderFailureHandler orderFailureHandler(DeliveryAcknowledger deliveryAcknowledger) {
+        // NB! the order has been sent into the pipeline already (an asynchronous send succeeds once queued), so it
+        // returns its credit here, as it would have on the completion
+        return new OrderFailureHandler(List.of(inFlightLimiter(), deliveryAcknowledger));
+    }
+
+    private OrderCompletionAdvice orderCompletionAdvice(DeliveryAcknowledger deliveryAcknowledger, OrderDeduplicator orderDeduplicator) {
+        if (appConfig.getDedup().isEnabled()) {
+            // NB! recorded before the acknowledgement, an order acknowledged is never redelivered anyway
+            return new OrderCompletionAdvice(List.of(orderDeduplicator, inFlightLimiter(), deliveryAcknowledger));
+        }
+
+        return new OrderCompletionAdvice(List.of(inFlightLimiter(), deliveryAcknowledger));
+    }
+
+    @Bean
+    public OrderVersionTable orderVersionTable() {
+        return new OrderVersionTable(appConfig.getPipeline().getVersionTableSize());
+    }
+
+    @Bean
+    public IntegrationFlow processOrderFlow(DeliveryAcknowledger deliveryAcknowledger, OrderDeduplicator orderDeduplicator) {
+        IntegrationFlowBuilder flow = IntegrationFlow.from(processedOrderChannel());
+
+        if (appConfig.getPipeline().isDropStaleOrders()) {
+            // a late message would regress the order in CRM, so it is dropped before any HTTP call or disk write
+            flow = flow.filter(Order.class, orderVersionTable()::apply, e -> e.discardChannel(staleOrderChannel()));
+        }
+
+        // the order leaves the pipeline only after it has reached both CRM and Financial systems, so this is
+        // where it returns its credit and where its message is acknowledged (manual acknowledge mode)
+        return flow
+                .handle(orderProcessor, "process", e -> e.advice(orderCompletionAdvice(deliveryAcknowledger, orderDeduplicator)))
                 .get();
     }
 
     @Bean
     public MessageChannel processedOrderChannel() {
-        return new ExecutorChannel(Executors.newFixedThreadPool(10));
+        // stay on the lane thread (or the thread releasing the resequenced order, under the lock of its group),
+        // otherwise the order of the messages would be lost again; the processing does not block it anyway
+        return new DirectChannel();
     }
 
     @Bean
@@ -90,16 +365,38 @@ public class IntegrationConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(prefix = "app.pipeline", name = "ordering", havingValue = "resequencer")
     public IntegrationFlow resequencingFlow() {
+        // the orders have no sequence numbers, they are released by their status lifecycle as soon as they are in order
+        final OrderStatusSequencer orderStatusSequencer = new OrderStatusSequencer(messageStore);
+        final OrderResequencingMessageHandler resequencer = new OrderResequencingMessageHandler(orderStatusSequencer, messageStore, orderCorrelationStrategy);
+
+        // only the orders out of order wait, and not longer than max-wait
+        resequencer.setGroupTimeoutExpression(new ValueExpression<>(appConfig.getResequencer().getMaxWait().toMillis()));
+        resequencer.setSendPartialResultOnExpiry(true);
+        resequencer.setDiscardChannel(discardedOrderChannel());
+        // the groups recovered from the spill log have no messages coming to time them out, they are released on start
+        resequencer.setExpireTimeout(appConfig.getResequencer().getMaxWait().toMillis());
+
         return IntegrationFlow.from(orderInputChannel())
-                .resequence(spec -> spec
-                        .messageStore(messageStore)
-                        .correlationStrategy(orderCorrelationStrategy)
-                        .releasePartialSequences(true)
-                        .groupTimeout(5000)
-                        .sendPartialResultOnExpiry(true)
-                )
+                .handle(resequencer)
                 .channel(processedOrderChannel())
                 .get();
     }
+
+    @Bean
+    public MessageChannel staleOrderChannel() {
+        return new DirectChannel();
+    }
+
+    @Bean
+    public IntegrationFlow staleOrderFlow(DeliveryAcknowledger deliveryAcknowledger, OrderDeduplicator orderDeduplicator) {
+        // the stale order is done with, it still returns its credit and its message is acknowledged
+        return IntegrationFlow.from(staleOrderChannel())
+                .log(LoggingHandler.Level.INFO, m -> "Dropped stale order #" + ((Order) m.getPayload()).getOrderId() + " with status " + ((Order) m.getPayload()).getStatus())
+                .handle(message -> {
+                    // nothing to process, only to be completed
+                }, e -> e.advice(orderCompletionAdvice(deliveryAcknowledger, orderDeduplicator)))
+                .get();
+    }
 }
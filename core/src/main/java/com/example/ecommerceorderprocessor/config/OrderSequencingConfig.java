@@ -1,20 +1,44 @@
 package com.example.ecommerceorderprocessor.config;
 
+import com.example.ecommerceorderprocessor.integration.OrderMessageGroupStore;
 import com.example.ecommerceorderprocessor.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.store.MessageGroupStore;
-import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 @Configuration
+@RequiredArgsConstructor
 public class OrderSequencingConfig {
 
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+
     @Bean
-    public MessageGroupStore messageStore() {
-        return new SimpleMessageStore();
+    public MessageGroupStore messageStore(TaskScheduler taskScheduler) throws IOException {
+        final AppConfig.Resequencer resequencer = appConfig.getResequencer();
+        final OrderMessageGroupStore messageStore;
+
+        // NB! the groups are spilled by the resequencer only, the lanes would not release the recovered ones
+        if (resequencer.getSpillDirectory() != null && appConfig.getPipeline().getOrdering() == AppConfig.Ordering.RESEQUENCER) {
+            messageStore = new OrderMessageGroupStore(resequencer.getStripes(), resequencer.getGroupTtl(), Path.of(resequencer.getSpillDirectory()),
+                    resequencer.getMemoryBudget().toBytes(), objectMapper);
+        } else {
+            messageStore = new OrderMessageGroupStore(resequencer.getStripes(), resequencer.getGroupTtl());
+        }
+
+        // the groups of the released orders would otherwise stay in the memory forever
+        taskScheduler.scheduleWithFixedDelay(messageStore::evictExpiredGroups, messageStore.getEvictionInterval());
+
+        return messageStore;
     }
 
     @Bean
@@ -30,4 +54,4 @@ public class OrderSequencingConfig {
     public MessageChannel orderSequencingChannel() {
         return new QueueChannel();
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,89 @@
 package com.example.ecommerceorderprocessor.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+
 @Configuration
 public class RestTemplateConfig {
 
+    private static ClientHttpRequestFactory apacheRequestFactory(AppConfig.CRM crm) {
+        final PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(crm.getMaxConnections())
+                .setMaxConnPerRoute(crm.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(crm.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(crm.getReadTimeout()))
+                        .build())
+                .build();
+
+        final CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.of(crm.getReadTimeout()))
+                        .build())
+                // keep the idle connections open for reuse, but not longer than the keep-alive time
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(crm.getKeepAlive()))
+                .evictIdleConnections(TimeValue.of(crm.getKeepAlive()))
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Creates the HTTP client for the CRM calls according to {@code app.crm} settings.
+     */
+    public static ClientHttpRequestFactory crmRequestFactory(AppConfig.CRM crm) {
+        return switch (crm.getHttpClient()) {
+            case APACHE -> apacheRequestFactory(crm);
+            case JDK -> jdkRequestFactory(crm);
+            case SIMPLE -> {
+                final SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+                requestFactory.setConnectTimeout(crm.getConnectTimeout());
+                requestFactory.setReadTimeout(crm.getReadTimeout());
+
+                yield requestFactory;
+            }
+        };
+    }
+
+    private static ClientHttpRequestFactory jdkRequestFactory(AppConfig.CRM crm) {
+        // NB! the connection pool of the JDK client is shared by the whole JVM and has no builder settings, its size and
+        // keep-alive are set on launch (-Djdk.httpclient.connectionPoolSize, -Djdk.httpclient.keepalive.timeout), so
+        // max-connections and keep-alive do not apply here
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .version(crm.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(crm.getConnectTimeout())
+                .build();
+
+        final JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(crm.getReadTimeout());
+
+        return requestFactory;
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(AppConfig appConfig) {
+        final AppConfig.CRM crm = appConfig.getCrm();
+
+        if (crm.isHttp2() && crm.getHttpClient() != AppConfig.HttpClient.JDK) {
+            throw new IllegalStateException("HTTP/2 is supported only by the JDK HTTP client, please set app.crm.http-client to jdk");
+        }
+
+        return new RestTemplate(crmRequestFactory(crm));
     }
-}
\ No newline at end of file
+}
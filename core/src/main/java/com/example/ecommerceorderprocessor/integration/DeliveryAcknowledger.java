@@ -0,0 +1,163 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.rabbitmq.client.Channel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Acknowledges the AMQP deliveries of the manual acknowledge mode only when the orders are fully processed.
+ * <p>
+ * The lanes complete the orders out of the delivery order, so every channel keeps a window of the completed delivery
+ * tags and acknowledges them cumulatively ({@code multiple=true}) up to the highest tag that has no incomplete
+ * delivery before it. One acknowledgement is sent per {@code batchSize} deliveries, the rest is sent by {@link #flush()}.
+ * Failed deliveries are returned to the queue one by one as soon as they fail, so they are redelivered (e.g. after CRM
+ * has been unavailable). Only the rejected ones ({@link OrderCompletionListener#orderRejected(Message)}, e.g. not
+ * converted) are rejected without requeue, they would fail again; the same as the container does in the auto mode.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DeliveryAcknowledger implements OrderCompletionListener {
+
+    private final int batchSize;
+    private final Map<Channel, ChannelDeliveries> channels = new ConcurrentHashMap<>();
+
+    private void complete(Message<?> message, boolean success, boolean requeue) {
+        final Channel channel = message.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+        final Long deliveryTag = message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+
+        if (channel == null || deliveryTag == null) {
+            return;
+        }
+
+        channels.computeIfAbsent(channel, ChannelDeliveries::new).complete(deliveryTag, success, requeue, batchSize);
+    }
+
+    /**
+     * Acknowledges all the completed deliveries, which are still waiting for the batch to fill up.
+     */
+    public void flush() {
+        // the closed channels are forgotten, their unacknowledged deliveries are redelivered by the broker anyway
+        channels.values().removeIf(deliveries -> !deliveries.flush());
+    }
+
+    /**
+     * Marks the delivery of the message as completed, the failed one is requeued. The messages without the AMQP
+     * channel header (i.e. not consumed in manual acknowledge mode) are ignored.
+     */
+    @Override
+    public void orderCompleted(Message<?> message, boolean success) {
+        complete(message, success, true);
+    }
+
+    /**
+     * Marks the delivery of the message as failed, without requeue.
+     */
+    @Override
+    public void orderRejected(Message<?> message) {
+        complete(message, false, false);
+    }
+
+    private static final class ChannelDeliveries {
+        private static final byte FAILED = 2;
+        private static final byte PENDING = 0;
+        private static final byte SUCCEEDED = 1;
+
+        private final Channel channel;
+        // highest delivery tag which is acknowledged (together with all the tags before it)
+        private long acknowledged;
+        // highest successful delivery tag, which has no incomplete delivery before it
+        private long acknowledgeable;
+        // highest delivery tag, which has no incomplete delivery before it
+        private long completed;
+        // states of the delivery tags after the completed one, indexed by the tag modulo the length of the window
+        private byte[] window = new byte[256];
+
+        private ChannelDeliveries(Channel channel) {
+            this.channel = channel;
+        }
+
+        private void acknowledge() {
+            try {
+                channel.basicAck(acknowledgeable, true);
+
+                acknowledged = acknowledgeable;
+            } catch (Exception e) {
+                log.warn("Failed to acknowledge the deliveries up to {}, they will be redelivered by the broker", acknowledgeable, e);
+            }
+        }
+
+        synchronized void complete(long deliveryTag, boolean success, boolean requeue, int batchSize) {
+            if (deliveryTag <= completed) {
+                return;
+            }
+
+            if (!success) {
+                try {
+                    channel.basicNack(deliveryTag, false, requeue);
+                } catch (Exception e) {
+                    log.warn("Failed to reject the delivery {}, it will be redelivered by the broker", deliveryTag, e);
+                }
+            }
+
+            ensureWindowCapacity(deliveryTag - completed);
+
+            window[index(deliveryTag)] = success ? SUCCEEDED : FAILED;
+
+            // move forward over all the deliveries completed without gaps
+            for (byte state = window[index(completed + 1)]; state != PENDING; state = window[index(completed + 1)]) {
+                completed++;
+                window[index(completed)] = PENDING;
+
+                // NB! the rejected deliveries are not outstanding anymore, so the acknowledgement must not point to them
+                if (state == SUCCEEDED) {
+                    acknowledgeable = completed;
+                }
+            }
+
+            if (acknowledgeable - acknowledged >= batchSize) {
+                acknowledge();
+            }
+        }
+
+        private void ensureWindowCapacity(long distance) {
+            if (distance < window.length) {
+                return;
+            }
+
+            final byte[] previousWindow = window;
+
+            int length = previousWindow.length;
+
+            while (length <= distance) {
+                length <<= 1;
+            }
+
+            window = new byte[length];
+
+            for (long deliveryTag = completed + 1; deliveryTag < completed + previousWindow.length; deliveryTag++) {
+                window[index(deliveryTag)] = previousWindow[(int) (deliveryTag % previousWindow.length)];
+            }
+        }
+
+        synchronized boolean flush() {
+            if (!channel.isOpen()) {
+                return false;
+            }
+
+            if (acknowledgeable > acknowledged) {
+                acknowledge();
+            }
+
+            return true;
+        }
+
+        private int index(long deliveryTag) {
+            return (int) (deliveryTag % window.length);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Credit based backpressure for the order pipeline. Every order takes a credit when it enters the pipeline and
+ * returns it when it is completed, so no more than {@code maxInFlight} orders are queued in the lanes or waiting for
+ * the sinks. When the credits are exhausted, the consumer thread is blocked on the entry, the prefetch buffer of the
+ * consumer fills up and the broker stops delivering until the sinks catch up.
+ */
+@Slf4j
+public class InFlightLimiter implements ChannelInterceptor, OrderCompletionListener {
+
+    private final Semaphore credits;
+    private final int maxInFlight;
+
+    public InFlightLimiter(int maxInFlight) {
+        this(maxInFlight, 0);
+    }
+
+    /**
+     * @param inFlight the orders already in the pipeline, e.g. recovered from disk, they return their credits too
+     */
+    public InFlightLimiter(int maxInFlight, int inFlight) {
+        // NB! the credits may start below zero, then the consumer waits until enough of the orders are completed
+        this.credits = new Semaphore(maxInFlight - inFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // the order has not entered the pipeline, so it would never be completed
+        if (!sent || ex != null) {
+            credits.release();
+        }
+    }
+
+    public int getInFlight() {
+        return maxInFlight - credits.availablePermits();
+    }
+
+    @Override
+    public void orderCompleted(Message<?> message, boolean success) {
+        credits.release();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (credits.tryAcquire()) {
+            return message;
+        }
+
+        log.debug("The limit of {} orders in flight is reached, waiting for the orders to be processed", maxInFlight);
+
+        try {
+            credits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new MessageDeliveryException(message, "Interrupted while waiting for the order pipeline capacity");
+        }
+
+        return message;
+    }
+}
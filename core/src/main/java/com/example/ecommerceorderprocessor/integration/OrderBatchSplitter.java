@@ -0,0 +1,54 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.integration.splitter.AbstractMessageSplitter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a batch of AMQP deliveries (consumer side batching) into separate messages, one per order. Every message
+ * gets back the headers of its own delivery instead of the headers of the whole batch.
+ */
+public class OrderBatchSplitter extends AbstractMessageSplitter {
+
+    public OrderBatchSplitter() {
+        // NB! the sequence headers are used by the resequencer, so they must not be polluted by the batch positions
+        setApplySequence(false);
+    }
+
+    @Override
+    protected boolean willAddHeaders(Message<?> message) {
+        return true;
+    }
+
+    @Override
+    protected void addHeaders(Message<?> message, Map<String, Object> headers) {
+        // the rest of the batch headers (e.g. AMQP channel) are still shared by all the orders of the batch
+        headers.remove(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Object splitMessage(Message<?> message) {
+        final List<?> payloads = (List<?>) message.getPayload();
+        final List<Map<String, Object>> batchHeaders = message.getHeaders().get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, List.class);
+
+        final List<Message<?>> messages = new ArrayList<>(payloads.size());
+
+        for (int i = 0; i < payloads.size(); i++) {
+            final MessageBuilder<?> builder = MessageBuilder.withPayload(payloads.get(i));
+
+            if (batchHeaders != null) {
+                builder.copyHeaders(batchHeaders.get(i));
+            }
+
+            messages.add(builder.build());
+        }
+
+        return messages;
+    }
+}
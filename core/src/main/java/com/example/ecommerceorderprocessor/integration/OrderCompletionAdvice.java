@@ -0,0 +1,55 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.integration.handler.advice.AbstractRequestHandlerAdvice;
+import org.springframework.messaging.Message;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Notifies the {@link OrderCompletionListener}s once the advised handler has processed the order message,
+ * successfully or not. If the handler returns a {@link CompletableFuture}, the listeners are notified when the
+ * future completes, and the future itself is not sent any further.
+ * <p>
+ * The failure of the handler is logged, but not thrown any further: the order is completed already, and the errors
+ * reaching the error channel are completed by the {@link OrderFailureHandler}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class OrderCompletionAdvice extends AbstractRequestHandlerAdvice {
+
+    private final List<OrderCompletionListener> listeners;
+
+    private void complete(Message<?> message, boolean success) {
+        for (OrderCompletionListener listener : listeners) {
+            listener.orderCompleted(message, success);
+        }
+    }
+
+    @Override
+    protected Object doInvoke(ExecutionCallback callback, Object target, Message<?> message) {
+        final Object result;
+
+        try {
+            result = callback.execute();
+        } catch (RuntimeException e) {
+            log.error("Failed to process the order message {}", message.getHeaders().getId(), e);
+
+            complete(message, false);
+
+            return null;
+        }
+
+        if (result instanceof CompletableFuture<?> future) {
+            future.whenComplete((value, e) -> complete(message, e == null));
+
+            return null;
+        }
+
+        complete(message, true);
+
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Gets notified when the order message has left the pipeline, i.e. it has been processed by all the sinks or
+ * the processing has failed.
+ */
+public interface OrderCompletionListener {
+
+    void orderCompleted(Message<?> message, boolean success);
+
+    /**
+     * Gets notified when the order message has left the pipeline as one which would fail the same way again (e.g. it
+     * could not be converted into an order), so it must not be retried. By default it is a failure as any other.
+     */
+    default void orderRejected(Message<?> message) {
+        orderCompleted(message, false);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The fingerprints (64-bit hashes of orderId, status and {@code updatedTimestamp}) of the recently processed orders,
+ * to drop the messages redelivered by the broker (e.g. after a consumer restart) before they enter the pipeline.
+ * <p>
+ * An order is recorded only when it has been processed successfully, so a message redelivered while its first delivery
+ * is still in the pipeline is not caught here (it is dropped as stale by the {@link OrderVersionTable} instead), but a
+ * failed or crashed delivery is never lost. The orders without {@code updatedTimestamp} are never recorded nor dropped,
+ * their versions cannot be told apart. The fingerprints of the last {@code windowSize} to {@code 2 * windowSize}
+ * orders are kept exactly, in two primitive open addressing tables rolling over two generations (when the current
+ * generation is full, the previous one is dropped and the current one becomes the previous one).
+ * <p>
+ * NB! no probabilistic filter (e.g. Bloom) remembers the older orders: its false positive would drop a new order
+ * silently, and the redeliveries come within the unacknowledged messages anyway. A longer memory costs 32 to 64 bytes
+ * per order of the window size.
+ * <p>
+ * With the snapshot file, the fingerprints are written into the file by {@link #snapshot()} and on {@link #close()},
+ * and read back on start, so the duplicates are recognized across the restarts too.
+ */
+@Slf4j
+public class OrderDeduplicator implements OrderCompletionListener, Closeable {
+
+    private static final long EMPTY = 0;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private FingerprintSet previousWindow;
+    private final Path snapshotFile;
+    // the scheduled snapshot and the one on close must not write the same temporary file at once
+    private final Object snapshotLock = new Object();
+    private FingerprintSet window;
+    private final int windowSize;
+
+    public OrderDeduplicator(int windowSize, Path snapshotFile) {
+        this.previousWindow = new FingerprintSet(windowSize);
+        this.snapshotFile = snapshotFile;
+        this.window = new FingerprintSet(windowSize);
+        this.windowSize = windowSize;
+
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            restore();
+        }
+    }
+
+    private static long fingerprint(Order order) {
+        long fingerprint = OrderVersionTable.hash(order.getOrderId());
+
+        fingerprint = mix(fingerprint ^ (order.getStatus() != null ? order.getStatus().ordinal() + 1 : 0));
+        fingerprint = mix(fingerprint ^ OrderVersionTable.timestamp(order.getUpdatedTimestamp()));
+
+        return fingerprint != EMPTY ? fingerprint : 1;
+    }
+
+    private static boolean isRecognizable(Order order) {
+        return order.getOrderId() != null && order.getUpdatedTimestamp() != null;
+    }
+
+    private static long mix(long hash) {
+        // the murmur3 finalizer
+        hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+
+        return hash ^ hash >>> 33;
+    }
+
+    private static void readLongs(DataInputStream input, long[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readLong();
+        }
+    }
+
+    private static void writeLongs(DataOutputStream output, long[] values) throws IOException {
+        for (long value : values) {
+            output.writeLong(value);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (snapshotFile != null) {
+            snapshot();
+        }
+    }
+
+    /**
+     * @return whether the same version of the order has been processed already, {@code false} for the orders without
+     * orderId or {@code updatedTimestamp}
+     */
+    public synchronized boolean isDuplicate(Order order) {
+        if (!isRecognizable(order)) {
+            return false;
+        }
+
+        final long fingerprint = fingerprint(order);
+
+        return window.contains(fingerprint) || previousWindow.contains(fingerprint);
+    }
+
+    @Override
+    public void orderCompleted(Message<?> message, boolean success) {
+        // the failed orders may be redelivered, they are not duplicates
+        if (success && message.getPayload() instanceof Order order && isRecognizable(order)) {
+            record(fingerprint(order));
+        }
+    }
+
+    private synchronized void record(long fingerprint) {
+        if (window.size == windowSize) {
+            final FingerprintSet dropped = previousWindow;
+
+            previousWindow = window;
+            window = dropped;
+            window.clear();
+        }
+
+        window.add(fingerprint);
+    }
+
+    private void restore() {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 64 * 1024))) {
+            if (input.readInt() != SNAPSHOT_VERSION || input.readInt() != windowSize) {
+                log.warn("The order fingerprint snapshot {} does not match the deduplication settings, it is ignored", snapshotFile);
+
+                return;
+            }
+
+            window.read(input);
+            previousWindow.read(input);
+
+            log.info("Restored the fingerprints of {} recent orders from {}", window.size + previousWindow.size, snapshotFile);
+        } catch (IOException e) {
+            log.warn("Failed to read the order fingerprint snapshot {}, the duplicates are recognized from now on only", snapshotFile, e);
+
+            window.clear();
+            previousWindow.clear();
+        }
+    }
+
+    /**
+     * Writes the fingerprints into the snapshot file. A failure is only logged, the next snapshot is tried as usual.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() {
+        final FingerprintSet[] windows;
+
+        // NB! copied under the lock, but written without holding up the consumers
+        synchronized (this) {
+            windows = new FingerprintSet[]{window.copy(), previousWindow.copy()};
+        }
+
+        final Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try {
+            if (snapshotFile.getParent() != null) {
+                Files.createDirectories(snapshotFile.getParent());
+            }
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile), 64 * 1024))) {
+                output.writeInt(SNAPSHOT_VERSION);
+                output.writeInt(windowSize);
+
+                for (FingerprintSet fingerprints : windows) {
+                    fingerprints.write(output);
+                }
+            }
+
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the order fingerprint snapshot {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * The exact set of the fingerprints, open addressing with linear probing. Nothing is ever removed, the whole set
+     * is cleared when its generation is dropped.
+     */
+    private static final class FingerprintSet {
+
+        private final long[] fingerprints;
+        private final int mask;
+        private int size;
+
+        FingerprintSet(int capacity) {
+            // at most half full, so the probe sequences stay short
+            this(new long[Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2], 0);
+        }
+
+        private FingerprintSet(long[] fingerprints, int size) {
+            this.fingerprints = fingerprints;
+            this.mask = fingerprints.length - 1;
+            this.size = size;
+        }
+
+        void add(long fingerprint) {
+            int slot = (int) fingerprint & mask;
+
+            while (fingerprints[slot] != EMPTY) {
+                if (fingerprints[slot] == fingerprint) {
+                    return;
+                }
+
+                slot = slot + 1 & mask;
+            }
+
+            fingerprints[slot] = fingerprint;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(fingerprints, EMPTY);
+            size = 0;
+        }
+
+        boolean contains(long fingerprint) {
+            for (int slot = (int) fingerprint & mask; fingerprints[slot] != EMPTY; slot = slot + 1 & mask) {
+                if (fingerprints[slot] == fingerprint) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        FingerprintSet copy() {
+            return new FingerprintSet(fingerprints.clone(), size);
+        }
+
+        void read(DataInputStream input) throws IOException {
+            size = input.readInt();
+            readLongs(input, fingerprints);
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeInt(size);
+            writeLongs(output, fingerprints);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.integration.amqp.support.ManualAckListenerExecutionFailedException;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import java.util.List;
+
+/**
+ * Completes the order messages as failed, which have never reached the {@link OrderCompletionAdvice}, so that their
+ * deliveries do not leave a gap in the acknowledgements (nor hold their credits). It handles:
+ * <ul>
+ *     <li>the error messages of the inbound adapter, the deliveries which could not be converted into the order (only
+ *     their AMQP channel and delivery tag are known, they are rejected) or failed on the consumer thread,</li>
+ *     <li>the error messages of the asynchronous stages, the failed message is the order,</li>
+ *     <li>the order messages discarded by a stage (rejected, the stage would discard them again).</li>
+ * </ul>
+ * The error messages of anything else (e.g. the scheduled tasks) are ignored.
+ */
+@RequiredArgsConstructor
+public class OrderFailureHandler implements MessageHandler {
+
+    private final List<OrderCompletionListener> listeners;
+
+    /**
+     * @return the failed order message, {@code null} if the error is not about an order message
+     */
+    private static Message<?> failedMessage(Message<?> message) {
+        if (!(message.getPayload() instanceof Throwable error)) {
+            // discarded
+            return message;
+        }
+
+        if (error instanceof ManualAckListenerExecutionFailedException e) {
+            return MessageBuilder.withPayload(e)
+                    .setHeader(AmqpHeaders.CHANNEL, e.getChannel())
+                    .setHeader(AmqpHeaders.DELIVERY_TAG, e.getDeliveryTag())
+                    .build();
+        }
+
+        return error instanceof MessagingException e ? e.getFailedMessage() : null;
+    }
+
+    @Override
+    public void handleMessage(Message<?> message) {
+        final Message<?> failedMessage = failedMessage(message);
+
+        if (failedMessage == null) {
+            return;
+        }
+
+        final boolean rejected = isRejected(message);
+
+        for (OrderCompletionListener listener : listeners) {
+            if (rejected) {
+                listener.orderRejected(failedMessage);
+            } else {
+                listener.orderCompleted(failedMessage, false);
+            }
+        }
+    }
+
+    /**
+     * @return whether the message would fail the same way again: it is discarded or could not be converted
+     */
+    private static boolean isRejected(Message<?> message) {
+        if (!(message.getPayload() instanceof Throwable error)) {
+            return true;
+        }
+
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MessageConversionException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
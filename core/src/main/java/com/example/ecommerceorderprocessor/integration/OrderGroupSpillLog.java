@@ -0,0 +1,242 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only log of the order groups spilled out of the memory, written through the memory mapping:
+ * <pre>
+ * 'G' length crc32 group      the spilled group
+ * 'D' length crc32 position   the group spilled at the position has been loaded back (or removed)
+ * </pre>
+ * The length and the CRC32 (of the body) are big-endian ints. The log is read only at the start, the records up to
+ * the first invalid one (the zero bytes left by the mapping, or torn by a crash) are recovered, the groups without
+ * their 'D' record are rewritten into the new log, and the rest is dropped. Whenever no group is spilled anymore, the
+ * log is truncated.
+ */
+@Slf4j
+class OrderGroupSpillLog implements Closeable {
+
+    static final String FILE_NAME = "order-groups.spill";
+
+    private static final byte DISCARDED = 'D';
+    private static final byte GROUP = 'G';
+    private static final int HEADER_LENGTH = 1 + 4 + 4;
+    // the file is extended by this length at a time
+    private static final int MAPPING_LENGTH = 16 * 1024 * 1024;
+
+    private FileChannel channel;
+    private final Path file;
+    // the number of the groups spilled and not discarded
+    private int live;
+    private MappedByteBuffer mapping;
+    // the position in the file of the current mapping
+    private long mappingPosition;
+
+    OrderGroupSpillLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        file = directory.resolve(FILE_NAME);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int checksum(byte[] body) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(body);
+
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * Appends the spilled group.
+     *
+     * @return the position of the group in the log
+     */
+    synchronized long append(byte[] group) {
+        final long position = position();
+        write(GROUP, group);
+        live++;
+
+        return position;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (mapping != null) {
+                mapping.force();
+                channel.truncate(position());
+            }
+        } finally {
+            mapping = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * Marks the group spilled at the position as not spilled anymore.
+     */
+    synchronized void discard(long position) {
+        live--;
+
+        if (live == 0) {
+            // nothing is spilled, the log starts over
+            truncate();
+
+            return;
+        }
+
+        write(DISCARDED, ByteBuffer.allocate(8).putLong(position).array());
+    }
+
+    private void map(long position, int length) {
+        try {
+            mappingPosition = position;
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map the order group spill log " + file, e);
+        }
+    }
+
+    private long position() {
+        return mapping != null ? mappingPosition + mapping.position() : 0;
+    }
+
+    /**
+     * Reads the spilled group.
+     */
+    synchronized byte[] read(long position) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(header, position);
+
+        final byte[] group = new byte[header.getInt(1)];
+        readFully(ByteBuffer.wrap(group), position + HEADER_LENGTH);
+
+        if (header.get(0) != GROUP || header.getInt(5) != checksum(group)) {
+            throw new IOException("The order group spilled at " + position + " into " + file + " is corrupted");
+        }
+
+        return group;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("The order group spilled at " + position + " is beyond the end of " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads the spilled groups left by the previous run and rewrites them into the new log.
+     *
+     * @return the groups by their new positions
+     */
+    synchronized Map<Long, byte[]> recover() throws IOException {
+        final Map<Long, byte[]> groups = new LinkedHashMap<>();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            long position = 0;
+
+            while (true) {
+                final byte type = input.readByte();
+                final int length = input.readInt();
+                final int crc32 = input.readInt();
+
+                if (type != GROUP && type != DISCARDED || length < 0) {
+                    break;
+                }
+
+                final byte[] body = input.readNBytes(length);
+
+                if (body.length < length || crc32 != checksum(body)) {
+                    log.warn("The order group spill log {} is torn at {}, the rest is dropped", file, position);
+                    break;
+                }
+
+                if (type == GROUP) {
+                    groups.put(position, body);
+                } else {
+                    groups.remove(ByteBuffer.wrap(body).getLong());
+                }
+
+                position += HEADER_LENGTH + length;
+            }
+        } catch (EOFException e) {
+            // the end of the log
+        }
+
+        // NB! rewritten into a temporary file first, so the spilled groups survive a crash during the recovery
+        final Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        final Map<Long, byte[]> recovered = new LinkedHashMap<>();
+
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+
+            for (byte[] group : groups.values()) {
+                final ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + group.length)
+                        .put(GROUP).putInt(group.length).putInt(checksum(group)).put(group)
+                        .flip();
+
+                recovered.put(position, group);
+
+                while (record.hasRemaining()) {
+                    position += compactedChannel.write(record);
+                }
+            }
+
+            compactedChannel.force(true);
+        }
+
+        mapping = null;
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        live = recovered.size();
+        map(channel.size(), MAPPING_LENGTH);
+
+        if (live > 0) {
+            log.info("Recovered {} order groups from {}", live, file);
+        }
+
+        return recovered;
+    }
+
+    private void truncate() {
+        try {
+            // NB! the old mapping is not accessed anymore, it would fault beyond the end of the file
+            mapping = null;
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to truncate the order group spill log " + file, e);
+        }
+    }
+
+    private void write(byte type, byte[] body) {
+        final int length = HEADER_LENGTH + body.length;
+
+        if (mapping == null || mapping.remaining() < length) {
+            // the file is extended by the mapping
+            map(position(), Math.max(MAPPING_LENGTH, length));
+        }
+
+        mapping.put(type).putInt(body.length).putInt(checksum(body)).put(body);
+    }
+}
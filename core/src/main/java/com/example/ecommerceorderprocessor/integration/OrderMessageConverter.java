@@ -0,0 +1,55 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+
+/**
+ * Reads the body of the AMQP message straight into {@link Order} in a single pass, without the intermediate
+ * {@link java.util.Map} of the generic {@link org.springframework.amqp.support.converter.Jackson2JsonMessageConverter}.
+ * The reader and the writer are created once from the application {@link ObjectMapper}, so the same date formats
+ * are used as everywhere else.
+ */
+public class OrderMessageConverter implements MessageConverter {
+
+    private final ObjectReader orderReader;
+    private final ObjectWriter orderWriter;
+
+    public OrderMessageConverter(ObjectMapper objectMapper) {
+        this.orderReader = objectMapper.readerFor(Order.class);
+        this.orderWriter = objectMapper.writerFor(Order.class);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        try {
+            return orderReader.readValue(message.getBody());
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to read the order from the message body", e);
+        }
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        final byte[] body;
+
+        try {
+            body = orderWriter.writeValueAsBytes(object);
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to write the order into the message body", e);
+        }
+
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setContentEncoding("UTF-8");
+        messageProperties.setContentLength(body.length);
+
+        return new Message(body, messageProperties);
+    }
+}
@@ -0,0 +1,928 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupMetadata;
+import org.springframework.integration.support.MutableMessageHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * The in-memory store of the order groups of the resequencer.
+ * <p>
+ * The groups are spread by the hash of their orderId over the lock stripes, so the orders of different stripes never
+ * wait for each other, and a stripe is held only for the few field updates of a group. The groups are compact: the
+ * few messages of an order are kept in a small array, and the resequencer gets a copy of the group, so it never reads
+ * the group while another order of the stripe updates it.
+ * <p>
+ * With the partial sequences released, the resequencer leaves the empty groups in the store (they remember the last
+ * released sequence number), so every order would stay in the memory forever. The groups which are empty or complete
+ * are evicted when they have not been modified for {@code groupTtl}. The deadlines are kept on a timer wheel of
+ * {@value #WHEEL_SIZE} slots spanning {@code groupTtl}, every group is in one slot, so {@link #evictExpiredGroups()}
+ * looks only at the groups of the elapsed slots, not at all the groups. The groups still holding messages are left to
+ * the group timeout of the resequencer.
+ * <p>
+ * With the spill directory, the store keeps at most {@code memoryBudget} (estimated) of the orders in the memory, so an
+ * outage of the sinks does not fill up the heap. Beyond the budget, the least recently used groups of the stripes are
+ * spilled into the {@link OrderGroupSpillLog}: the orders are written into the log and only the headers of their
+ * messages are kept in the memory (the AMQP channel and delivery tag cannot be written anyway). A spilled group is
+ * loaded back as soon as its orders are needed or the group is modified. On {@link #close()} all the groups are
+ * spilled, and they are recovered on the next start. Only the orders already acknowledged are recovered, that is
+ * those without the AMQP channel (acknowledged by the container as soon as they are received), or recovered once
+ * already. The deliveries still waiting for the manual acknowledgement are redelivered by the broker, so they are
+ * skipped, otherwise both copies would be processed.
+ */
+@Slf4j
+public class OrderMessageGroupStore extends AbstractMessageGroupStore implements Closeable {
+
+    // the payload of the spilled messages, the orders are in the spill log
+    private static final Object SPILLED = new Object();
+    private static final int WHEEL_SIZE = 64;
+
+    private final LongSupplier clock;
+    private final long groupTtl;
+    private long lastTick;
+    private final long memoryBudget;
+    private final AtomicLong memoryUsed = new AtomicLong();
+    private final ObjectMapper objectMapper;
+    private final OrderGroupSpillLog spillLog;
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // the next stripe to spill the groups from, guarded by the spill lock
+    private int spillStripe;
+    private final Stripe[] stripes;
+    // the tick of the timer wheel in millis
+    private final long tick;
+    private final Queue<OrderMessageGroup>[] wheel;
+
+    public OrderMessageGroupStore(int stripes, Duration groupTtl) {
+        this(stripes, groupTtl, System::currentTimeMillis);
+    }
+
+    OrderMessageGroupStore(int stripes, Duration groupTtl, LongSupplier clock) {
+        this(stripes, groupTtl, clock, null, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * The store spilling the groups beyond the memory budget into the spill directory. The groups spilled by the
+     * previous run are recovered.
+     */
+    public OrderMessageGroupStore(int stripes, Duration groupTtl, Path spillDirectory, long memoryBudget, ObjectMapper objectMapper) throws IOException {
+        this(stripes, groupTtl, System::currentTimeMillis, new OrderGroupSpillLog(spillDirectory), memoryBudget, objectMapper);
+
+        recover();
+    }
+
+    @SuppressWarnings("unchecked")
+    private OrderMessageGroupStore(int stripes, Duration groupTtl, LongSupplier clock, OrderGroupSpillLog spillLog, long memoryBudget, ObjectMapper objectMapper) {
+        super(false);
+
+        this.clock = clock;
+        this.groupTtl = groupTtl.toMillis();
+        this.memoryBudget = memoryBudget;
+        this.objectMapper = objectMapper;
+        this.spillLog = spillLog;
+        this.stripes = new Stripe[roundUpToPowerOfTwo(stripes)];
+        this.tick = Math.max(1, this.groupTtl / WHEEL_SIZE);
+        this.wheel = new Queue[WHEEL_SIZE];
+        this.lastTick = clock.getAsLong() / tick;
+
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @Override
+    public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+        update(groupId, group -> {
+            for (Message<?> message : messages) {
+                group.add(message);
+            }
+        });
+
+        if (spillLog != null && memoryUsed.get() > memoryBudget) {
+            spillColdGroups();
+        }
+    }
+
+    /**
+     * Spills all the groups, so they are recovered on the next start.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillLog == null) {
+            return;
+        }
+
+        int spilled = 0;
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (OrderMessageGroup group : stripe.groups.values()) {
+                    if (spill(group)) {
+                        spilled++;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        spillLog.close();
+
+        if (spilled > 0) {
+            log.info("Spilled {} order groups to be recovered on the next start", spilled);
+        }
+    }
+
+    @Override
+    public void completeGroup(Object groupId) {
+        update(groupId, OrderMessageGroup::complete);
+    }
+
+    /**
+     * Evicts the empty or complete groups, which have not been modified for {@code groupTtl}.
+     *
+     * @return the number of the evicted groups
+     */
+    public synchronized int evictExpiredGroups() {
+        final long now = clock.getAsLong();
+        final long currentTick = now / tick;
+        final List<OrderMessageGroup> notExpired = new ArrayList<>();
+        int evicted = 0;
+
+        // NB! a whole turn at most, every slot has been visited then
+        for (long t = Math.max(lastTick + 1, currentTick - WHEEL_SIZE + 1); t <= currentTick; t++) {
+            final Queue<OrderMessageGroup> slot = wheel[(int) (t % WHEEL_SIZE)];
+            OrderMessageGroup group;
+
+            while ((group = slot.poll()) != null) {
+                if (evictIfExpired(group, now, notExpired)) {
+                    evicted++;
+                }
+            }
+        }
+
+        lastTick = Math.max(lastTick, currentTick);
+
+        for (OrderMessageGroup group : notExpired) {
+            // the deadline has moved since the group was scheduled
+            schedule(group, Math.max(group.getLastModified(), now) + groupTtl);
+        }
+
+        if (evicted > 0) {
+            log.debug("Evicted {} expired order groups", evicted);
+        }
+
+        return evicted;
+    }
+
+    private boolean evictIfExpired(OrderMessageGroup group, long now, List<OrderMessageGroup> notExpired) {
+        final Stripe stripe = stripe(group.getGroupId());
+
+        stripe.lock.lock();
+        try {
+            if (stripe.groups.get(group.getGroupId()) != group) {
+                // removed (and maybe created again, with its own deadline) since it was scheduled
+                return false;
+            }
+
+            if ((group.size() == 0 || group.isComplete()) && now - group.getLastModified() >= groupTtl) {
+                stripe.groups.remove(group.getGroupId());
+                release(group);
+
+                return true;
+            }
+
+            notExpired.add(group);
+
+            return false;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return how often {@link #evictExpiredGroups()} should be called, a tick of the timer wheel
+     */
+    public Duration getEvictionInterval() {
+        return Duration.ofMillis(tick);
+    }
+
+    @Override
+    public MessageGroupMetadata getGroupMetadata(Object groupId) {
+        return new MessageGroupMetadata(getMessageGroup(groupId));
+    }
+
+    @Override
+    public MessageGroup getMessageGroup(Object groupId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.loaded(groupId);
+
+            return group != null ? group.copy() : new OrderMessageGroup(groupId, clock.getAsLong());
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the copy of the group, {@code null} if there is no group
+     */
+    private MessageGroup getMessageGroupIfPresent(Object groupId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.loaded(groupId);
+
+            return group != null ? group.copy() : null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMessageCountForAllMessageGroups() {
+        int count = 0;
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (OrderMessageGroup group : stripe.groups.values()) {
+                    count += group.size();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public Message<?> getMessageFromGroup(Object groupId, UUID messageId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.loaded(groupId);
+
+            return group != null ? group.get(messageId) : null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMessageGroupCount() {
+        int count = 0;
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                count += stripe.groups.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public Collection<Message<?>> getMessagesForGroup(Object groupId) {
+        return getMessageGroup(groupId).getMessages();
+    }
+
+    @Override
+    public Message<?> getOneMessageFromGroup(Object groupId) {
+        return getMessageGroup(groupId).getOne();
+    }
+
+    @Override
+    public Iterator<MessageGroup> iterator() {
+        final List<Object> groupIds = new ArrayList<>();
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                groupIds.addAll(stripe.groups.keySet());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        // NB! the groups are copied one by one, the spilled ones are not all loaded at once
+        return groupIds.stream()
+                .map(this::getMessageGroupIfPresent)
+                .filter(Objects::nonNull)
+                .iterator();
+    }
+
+    private void load(OrderMessageGroup group) {
+        try {
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(spillLog.read(group.spillPosition)));
+            final SpilledGroup spilled = SpilledGroup.read(input);
+            int loaded = 0;
+
+            for (int i = 0; i < spilled.messageCount; i++) {
+                final MessageHeaders headers = SpilledGroup.readMessageHeaders(input);
+                // whether acknowledged, read by the recovery only
+                input.readBoolean();
+                final byte[] payload = input.readNBytes(input.readInt());
+
+                // NB! the messages left to redelivery are not in the recovered group
+                if (loaded < group.size() && group.messages[loaded].getHeaders().getId().equals(headers.getId())) {
+                    // the headers kept in the memory, with the AMQP headers of the delivery
+                    group.messages[loaded] = new GenericMessage<>(objectMapper.readValue(payload, Order.class), group.messages[loaded].getHeaders());
+                    loaded++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load the spilled order group " + group.getGroupId(), e);
+        }
+
+        spillLog.discard(group.spillPosition);
+        group.spillPosition = OrderMessageGroup.NOT_SPILLED;
+        group.updateMemorySize();
+        memoryUsed.addAndGet(group.memorySize);
+    }
+
+    @Override
+    public int messageGroupSize(Object groupId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.groups.get(groupId);
+
+            return group != null ? group.size() : 0;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Message<?> pollMessageFromGroup(Object groupId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.loaded(groupId);
+            final Message<?> message = group != null ? group.getOne() : null;
+
+            if (message != null) {
+                remove(group, message);
+                group.setLastModified(clock.getAsLong());
+            }
+
+            return message;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeMessageFromGroupById(Object groupId, UUID messageId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.loaded(groupId);
+            final Message<?> message = group != null ? group.get(messageId) : null;
+
+            if (message == null) {
+                return false;
+            }
+
+            remove(group, message);
+            group.setLastModified(clock.getAsLong());
+
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeMessageGroup(Object groupId) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.groups.remove(groupId);
+
+            if (group != null) {
+                // NB! the group stays in the wheel until its slot comes, but without its messages
+                release(group);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Recovers the groups spilled by the previous run, with their acknowledged orders only. The groups left without
+     * any order are dropped.
+     */
+    private void recover() throws IOException {
+        final long now = clock.getAsLong();
+        int redelivered = 0;
+
+        for (Map.Entry<Long, byte[]> recovered : spillLog.recover().entrySet()) {
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(recovered.getValue()));
+            final SpilledGroup spilled = SpilledGroup.read(input);
+            final OrderMessageGroup group = new OrderMessageGroup(spilled.groupId, spilled.timestamp);
+
+            group.complete = spilled.complete;
+            group.condition = spilled.condition;
+            group.lastModified = spilled.lastModified;
+            group.lastReleasedSequenceNumber = spilled.lastReleasedSequenceNumber;
+            group.spillPosition = recovered.getKey();
+
+            for (int i = 0; i < spilled.messageCount; i++) {
+                final MessageHeaders headers = SpilledGroup.readMessageHeaders(input);
+                final boolean acknowledged = input.readBoolean();
+
+                input.skipNBytes(input.readInt());
+
+                if (acknowledged) {
+                    group.add(new GenericMessage<>(SPILLED, headers));
+                } else {
+                    redelivered++;
+                }
+            }
+
+            if (group.size() == 0) {
+                spillLog.discard(recovered.getKey());
+                continue;
+            }
+
+            stripe(group.getGroupId()).groups.put(group.getGroupId(), group);
+            schedule(group, now + groupTtl);
+        }
+
+        if (redelivered > 0) {
+            log.info("Skipped {} spilled orders not acknowledged yet, they are redelivered by the broker", redelivered);
+        }
+    }
+
+    /**
+     * Frees the memory (or the spill log) of the group removed from the store.
+     */
+    private void release(OrderMessageGroup group) {
+        if (group.spillPosition != OrderMessageGroup.NOT_SPILLED) {
+            spillLog.discard(group.spillPosition);
+            group.spillPosition = OrderMessageGroup.NOT_SPILLED;
+        }
+
+        memoryUsed.addAndGet(-group.memorySize);
+        group.clear();
+    }
+
+    private void remove(OrderMessageGroup group, Message<?> message) {
+        final long memorySize = group.memorySize;
+
+        group.remove(message);
+        memoryUsed.addAndGet(group.memorySize - memorySize);
+    }
+
+    @Override
+    public void removeMessagesFromGroup(Object groupId, Collection<Message<?>> messages) {
+        update(groupId, group -> {
+            for (Message<?> message : messages) {
+                group.remove(message);
+            }
+        });
+    }
+
+    /**
+     * Writes the orders of the group into the spill log, unless it is spilled already or it is not a group of orders.
+     *
+     * @return whether the group has been spilled
+     */
+    private boolean spill(OrderMessageGroup group) {
+        if (group.spillPosition != OrderMessageGroup.NOT_SPILLED || group.size() == 0 || !(group.getGroupId() instanceof String groupId)) {
+            return false;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            new SpilledGroup(groupId, group.timestamp, group.lastModified, group.lastReleasedSequenceNumber, group.condition, group.complete, group.size()).write(output);
+
+            for (int i = 0; i < group.size(); i++) {
+                if (!(group.messages[i].getPayload() instanceof Order order)) {
+                    return false;
+                }
+
+                final MessageHeaders headers = group.messages[i].getHeaders();
+                final byte[] payload = objectMapper.writeValueAsBytes(order);
+
+                output.writeLong(headers.getId().getMostSignificantBits());
+                output.writeLong(headers.getId().getLeastSignificantBits());
+                output.writeLong(headers.getTimestamp());
+                output.writeBoolean(!headers.containsKey(AmqpHeaders.CHANNEL));
+                output.writeInt(payload.length);
+                output.write(payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill the order group " + groupId, e);
+        }
+
+        group.spillPosition = spillLog.append(bytes.toByteArray());
+
+        for (int i = 0; i < group.size(); i++) {
+            group.messages[i] = new GenericMessage<>(SPILLED, group.messages[i].getHeaders());
+        }
+
+        memoryUsed.addAndGet(-group.memorySize);
+        group.updateMemorySize();
+
+        return true;
+    }
+
+    /**
+     * Spills the least recently used groups of the stripes in turns, until the memory used is down to 3/4 of the
+     * budget (so the store does not spill on every message around the budget). The stripes are locked one at a time.
+     */
+    private void spillColdGroups() {
+        // NB! one thread spills, the others go on
+        if (!spillLock.tryLock()) {
+            return;
+        }
+
+        try {
+            final long target = memoryBudget / 4 * 3;
+            int spilled = 0;
+            int idle = 0;
+
+            // until a whole round of the stripes has nothing more to spill
+            while (memoryUsed.get() > target && idle < stripes.length) {
+                final Stripe stripe = stripes[spillStripe];
+                spillStripe = (spillStripe + 1) % stripes.length;
+
+                if (stripe.spillLeastRecentlyUsed()) {
+                    spilled++;
+                    idle = 0;
+                } else {
+                    idle++;
+                }
+            }
+
+            log.debug("Spilled {} order groups, {} bytes of the orders are left in the memory", spilled, memoryUsed.get());
+        } catch (UncheckedIOException e) {
+            log.warn("Failed to spill the order groups, they are kept in the memory", e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void schedule(OrderMessageGroup group, long deadline) {
+        // NB! the deadline is at most groupTtl (a whole turn) ahead, a group found in its slot too early is scheduled again
+        wheel[(int) (deadline / tick % WHEEL_SIZE)].add(group);
+    }
+
+    @Override
+    public void setGroupCondition(Object groupId, String condition) {
+        update(groupId, group -> group.setCondition(condition));
+    }
+
+    @Override
+    public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+        update(groupId, group -> group.setLastReleasedMessageSequenceNumber(sequenceNumber));
+    }
+
+    private Stripe stripe(Object groupId) {
+        final int hash = groupId.hashCode();
+
+        return stripes[(hash ^ hash >>> 16) & stripes.length - 1];
+    }
+
+    private void update(Object groupId, Consumer<OrderMessageGroup> update) {
+        final Stripe stripe = stripe(groupId);
+
+        stripe.lock.lock();
+        try {
+            final OrderMessageGroup group = stripe.getOrCreate(groupId);
+            final long memorySize = group.memorySize;
+
+            update.accept(group);
+            group.setLastModified(clock.getAsLong());
+            memoryUsed.addAndGet(group.memorySize - memorySize);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * The groups of a stripe, guarded by its lock. {@link ReentrantLock} rather than {@code synchronized}, it does not
+     * pin the virtual threads of the pipeline. The groups are kept in the access order, the least recently used first.
+     */
+    private final class Stripe {
+
+        private final Map<Object, OrderMessageGroup> groups = new LinkedHashMap<>(16, 0.75f, true);
+        private final ReentrantLock lock = new ReentrantLock();
+
+        OrderMessageGroup getOrCreate(Object groupId) {
+            OrderMessageGroup group = loaded(groupId);
+
+            if (group == null) {
+                final long now = clock.getAsLong();
+
+                group = new OrderMessageGroup(groupId, now);
+                groups.put(groupId, group);
+                schedule(group, now + groupTtl);
+            }
+
+            return group;
+        }
+
+        /**
+         * @return the group with its orders loaded, if it has been spilled
+         */
+        OrderMessageGroup loaded(Object groupId) {
+            final OrderMessageGroup group = groups.get(groupId);
+
+            if (group != null && group.spillPosition != OrderMessageGroup.NOT_SPILLED) {
+                load(group);
+            }
+
+            return group;
+        }
+
+        /**
+         * @return whether a group has been spilled
+         */
+        boolean spillLeastRecentlyUsed() {
+            lock.lock();
+            try {
+                for (OrderMessageGroup group : groups.values()) {
+                    if (spill(group)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The group of the messages of an order. An order has a few messages at a time, so they are kept in an array in the
+     * order of their arrival.
+     */
+    static final class OrderMessageGroup implements MessageGroup {
+
+        private static final Message<?>[] EMPTY = new Message<?>[0];
+        private static final long NOT_SPILLED = -1;
+
+        private boolean complete;
+        private String condition;
+        private final Object groupId;
+        private long lastModified;
+        private int lastReleasedSequenceNumber;
+        // the estimated size of the orders in the memory
+        private long memorySize;
+        private Message<?>[] messages = EMPTY;
+        private int size;
+        // the position of the group in the spill log
+        private long spillPosition = NOT_SPILLED;
+        private final long timestamp;
+
+        OrderMessageGroup(Object groupId, long timestamp) {
+            this.groupId = groupId;
+            this.timestamp = timestamp;
+            this.lastModified = timestamp;
+        }
+
+        @Override
+        public void add(Message<?> message) {
+            if (size == messages.length) {
+                messages = Arrays.copyOf(messages, Math.max(2, size * 2));
+            }
+
+            messages[size++] = message;
+            memorySize += memorySize(message);
+        }
+
+        @Override
+        public boolean canAdd(Message<?> message) {
+            return get(message.getHeaders().getId()) == null;
+        }
+
+        @Override
+        public void clear() {
+            messages = EMPTY;
+            memorySize = 0;
+            size = 0;
+        }
+
+        @Override
+        public void complete() {
+            complete = true;
+        }
+
+        OrderMessageGroup copy() {
+            final OrderMessageGroup copy = new OrderMessageGroup(groupId, timestamp);
+
+            copy.complete = complete;
+            copy.condition = condition;
+            copy.lastModified = lastModified;
+            copy.lastReleasedSequenceNumber = lastReleasedSequenceNumber;
+            copy.messages = size > 0 ? Arrays.copyOf(messages, size) : EMPTY;
+            copy.size = size;
+
+            return copy;
+        }
+
+        Message<?> get(UUID messageId) {
+            for (int i = 0; i < size; i++) {
+                if (messages[i].getHeaders().getId().equals(messageId)) {
+                    return messages[i];
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public String getCondition() {
+            return condition;
+        }
+
+        @Override
+        public Object getGroupId() {
+            return groupId;
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public int getLastReleasedMessageSequenceNumber() {
+            return lastReleasedSequenceNumber;
+        }
+
+        @Override
+        public Collection<Message<?>> getMessages() {
+            return Collections.unmodifiableList(Arrays.asList(messages).subList(0, size));
+        }
+
+        @Override
+        public Message<?> getOne() {
+            return size > 0 ? messages[0] : null;
+        }
+
+        @Override
+        public int getSequenceSize() {
+            return size > 0 ? new IntegrationMessageHeaderAccessor(messages[0]).getSequenceSize() : 0;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public boolean remove(Message<?> message) {
+            final UUID messageId = message.getHeaders().getId();
+
+            for (int i = 0; i < size; i++) {
+                if (messages[i].getHeaders().getId().equals(messageId)) {
+                    memorySize -= memorySize(messages[i]);
+                    System.arraycopy(messages, i + 1, messages, i, size - i - 1);
+                    messages[--size] = null;
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void setCondition(String condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public void setLastReleasedMessageSequenceNumber(int sequenceNumber) {
+            this.lastReleasedSequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private static long memorySize(Message<?> message) {
+            if (message.getPayload() == SPILLED) {
+                return 0;
+            }
+
+            // roughly the order with its strings and money amounts, and the message with its headers
+            return message.getPayload() instanceof Order order && order.getOrderItems() != null ? 512 + 256L * order.getOrderItems().size() : 512;
+        }
+
+        void updateMemorySize() {
+            memorySize = 0;
+
+            for (int i = 0; i < size; i++) {
+                memorySize += memorySize(messages[i]);
+            }
+        }
+    }
+
+    /**
+     * The spilled group, as it is written into the spill log, followed by its messages (the id and timestamp headers,
+     * whether the delivery has been acknowledged and the order as JSON).
+     */
+    private record SpilledGroup(String groupId, long timestamp, long lastModified, int lastReleasedSequenceNumber,
+                                String condition, boolean complete, int messageCount) {
+
+        static SpilledGroup read(DataInputStream input) throws IOException {
+            return new SpilledGroup(input.readUTF(), input.readLong(), input.readLong(), input.readInt(),
+                    input.readBoolean() ? input.readUTF() : null, input.readBoolean(), input.readInt());
+        }
+
+        static MessageHeaders readMessageHeaders(DataInputStream input) throws IOException {
+            final UUID id = new UUID(input.readLong(), input.readLong());
+            final long timestamp = input.readLong();
+
+            return new MutableMessageHeaders(Map.<String, Object>of(MessageHeaders.ID, id, MessageHeaders.TIMESTAMP, timestamp));
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeUTF(groupId);
+            output.writeLong(timestamp);
+            output.writeLong(lastModified);
+            output.writeInt(lastReleasedSequenceNumber);
+            output.writeBoolean(condition != null);
+
+            if (condition != null) {
+                output.writeUTF(condition);
+            }
+
+            output.writeBoolean(complete);
+            output.writeInt(messageCount);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import org.springframework.integration.aggregator.CorrelationStrategy;
+import org.springframework.integration.aggregator.ResequencingMessageHandler;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.messaging.Message;
+
+import java.util.Collection;
+
+/**
+ * The resequencer of the {@link OrderStatusSequencer}, which keeps the order group open after its group timeout has
+ * expired. The resequencer would either complete the group, then the next messages of the order would be discarded,
+ * or remove it (expire groups upon timeout), then the released status would be lost with the group and the next
+ * message in order would wait for the whole group timeout again. The emptied group is evicted by the
+ * {@link OrderMessageGroupStore} once it has not been modified for its TTL, as the groups released in order are.
+ */
+public class OrderResequencingMessageHandler extends ResequencingMessageHandler {
+
+    public OrderResequencingMessageHandler(OrderStatusSequencer orderStatusSequencer, MessageGroupStore messageStore, CorrelationStrategy correlationStrategy) {
+        super(orderStatusSequencer, messageStore, correlationStrategy, orderStatusSequencer);
+        setExpireGroupsUponTimeout(false);
+    }
+
+    @Override
+    protected void afterRelease(MessageGroup messageGroup, Collection<Message<?>> completedMessages, boolean timeout) {
+        // NB! released as in order, without completing the group
+        super.afterRelease(messageGroup, completedMessages, false);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import lombok.RequiredArgsConstructor;
+import org.springframework.integration.aggregator.MessageGroupProcessor;
+import org.springframework.integration.aggregator.ReleaseStrategy;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.messaging.Message;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Resequences the messages of an order by its status lifecycle, as the messages have no sequence numbers of their own:
+ * <pre>
+ * pending → updated... → confirmed → paid → shipped
+ *        ↘ (any time after pending) cancelled
+ * </pre>
+ * The updates are optional, so a confirmed order follows right after the pending one, and the updates of the same
+ * status follow each other by their {@code updatedTimestamp}.
+ * <p>
+ * A message is released as soon as its predecessor in the lifecycle has been released (the highest released status is
+ * kept as the condition of the order group). Only the messages which are really out of order are held back, until the
+ * missing predecessor arrives or the group timeout of the resequencer expires; then all the held messages are released
+ * in the lifecycle order anyway, and the group keeps their status (see {@link OrderResequencingMessageHandler}). The messages which come too late (their successors have been released already) have
+ * nothing to wait for, they are released straight away.
+ */
+@RequiredArgsConstructor
+public class OrderStatusSequencer implements ReleaseStrategy, MessageGroupProcessor {
+
+    private static final Comparator<Message<?>> LIFECYCLE_ORDER = Comparator
+            .comparingInt((Message<?> message) -> rank(status(message)))
+            .thenComparing(message -> ((Order) message.getPayload()).getUpdatedTimestamp(), Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()));
+
+    private final MessageGroupStore messageStore;
+
+    /**
+     * @return the rank of the status in the lifecycle, 0 for an unknown status
+     */
+    static int rank(OrderStatusEnum status) {
+        if (status == null) {
+            return 0;
+        }
+
+        return switch (status) {
+            case PENDING -> 1;
+            case UPDATED -> 2;
+            case CONFIRMED -> 3;
+            case PAID -> 4;
+            case SHIPPED, CANCELLED -> 5;
+        };
+    }
+
+    /**
+     * @return the rank of the status, which has to be released before the status
+     */
+    private static int predecessorRank(OrderStatusEnum status) {
+        if (status == null) {
+            return 0;
+        }
+
+        return switch (status) {
+            case PENDING -> 0;
+            case UPDATED, CONFIRMED, CANCELLED -> 1;
+            case PAID -> 3;
+            case SHIPPED -> 4;
+        };
+    }
+
+    private static OrderStatusEnum status(Message<?> message) {
+        return ((Order) message.getPayload()).getStatus();
+    }
+
+    /**
+     * @return the messages of the group in the lifecycle order
+     */
+    private static List<Message<?>> sorted(MessageGroup group) {
+        final List<Message<?>> messages = new ArrayList<>(group.getMessages());
+        messages.sort(LIFECYCLE_ORDER);
+
+        return messages;
+    }
+
+    /**
+     * @return the number of the sorted messages, which have their predecessors released (or released before them)
+     */
+    private static int releasable(List<Message<?>> messages, OrderStatusEnum released) {
+        int releasedRank = rank(released);
+
+        for (int i = 0; i < messages.size(); i++) {
+            final OrderStatusEnum status = status(messages.get(i));
+
+            // NB! the rest is held too, even the cancellation, not to overtake the missing status
+            if (predecessorRank(status) > releasedRank) {
+                return i;
+            }
+
+            releasedRank = Math.max(releasedRank, rank(status));
+        }
+
+        return messages.size();
+    }
+
+    private static OrderStatusEnum released(MessageGroup group) {
+        return group.getCondition() != null ? OrderStatusEnum.fromCode(group.getCondition()) : null;
+    }
+
+    @Override
+    public boolean canRelease(MessageGroup group) {
+        // NB! all or nothing, the messages left in the group would not be timed out again
+        return group.size() > 0 && releasable(sorted(group), released(group)) == group.size();
+    }
+
+    @Override
+    public Object processMessageGroup(MessageGroup group) {
+        // the whole group is released, in order or because the group timeout has expired
+        final List<Message<?>> messages = sorted(group);
+        OrderStatusEnum released = released(group);
+
+        for (Message<?> message : messages) {
+            if (rank(status(message)) > rank(released)) {
+                released = status(message);
+            }
+        }
+
+        if (released != null) {
+            messageStore.setGroupCondition(group.getGroupId(), released.getCode());
+        }
+
+        return messages;
+    }
+}
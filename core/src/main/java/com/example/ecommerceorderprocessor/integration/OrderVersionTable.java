@@ -0,0 +1,180 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.Order;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The last applied version (the status and {@code updatedTimestamp}) of the recent orders, to tell the stale messages
+ * of an order (older than what has been sent to the sinks already) before they reach CRM or Financial system.
+ * <p>
+ * The versions are kept in primitive arrays with open addressing (linear probing) by the 64-bit hash of the orderId,
+ * so nothing is allocated per order and a lookup is a few array reads. The table keeps at most {@code size} orders;
+ * when it is full, the least recently used order is evicted approximately by the clock algorithm (every lookup marks
+ * the order as referenced, the clock hand clears the marks and evicts the first order found without one). An evicted
+ * order is not known anymore, so its next message is applied whatever its version.
+ * <p>
+ * NB! The orderIds are compared by their 64-bit hash only, two orders colliding on it are practically impossible.
+ */
+public class OrderVersionTable {
+
+    private static final long EMPTY = 0;
+    private static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
+
+    private int clockHand;
+    private final long[] keys;
+    private final int mask;
+    private final int maxSize;
+    private final byte[] ranks;
+    private final boolean[] referenced;
+    private int size;
+    private final long[] timestamps;
+
+    public OrderVersionTable(int maxSize) {
+        // at most half full, so the probe sequences stay short
+        final int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) * 2;
+
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+        this.ranks = new byte[capacity];
+        this.referenced = new boolean[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    static long hash(String orderId) {
+        // FNV-1a, finished by the murmur3 mix for the better spread of the low bits
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < orderId.length(); i++) {
+            hash = (hash ^ orderId.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash != EMPTY ? hash : 1;
+    }
+
+    static long timestamp(LocalDateTime updatedTimestamp) {
+        if (updatedTimestamp == null) {
+            return UNKNOWN_TIMESTAMP;
+        }
+
+        // NB! in nanos, the version of a frequently updated order can change within a millisecond
+        return updatedTimestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + updatedTimestamp.getNano();
+    }
+
+    /**
+     * Records the version of the order, unless it is stale: the status is before the last applied one in the status
+     * lifecycle, or it is the same status, but updated earlier. The same version is applied again, it is the order
+     * requeued after its processing has failed (the redeliveries of the processed orders are dropped by the
+     * {@link OrderDeduplicator}). The orders without orderId or status are always applied, their version is unknown.
+     *
+     * @return whether the order has been applied, {@code false} if it is stale
+     */
+    public synchronized boolean apply(Order order) {
+        if (order.getOrderId() == null || order.getStatus() == null) {
+            return true;
+        }
+
+        final long key = hash(order.getOrderId());
+        final byte rank = (byte) OrderStatusSequencer.rank(order.getStatus());
+        final long timestamp = timestamp(order.getUpdatedTimestamp());
+        int slot = slot(key);
+
+        if (keys[slot] == key) {
+            referenced[slot] = true;
+
+            if (rank < ranks[slot] || rank == ranks[slot] && timestamp != UNKNOWN_TIMESTAMP && timestamp < timestamps[slot]) {
+                return false;
+            }
+
+            ranks[slot] = rank;
+            timestamps[slot] = Math.max(timestamp, timestamps[slot]);
+
+            return true;
+        }
+
+        if (size == maxSize) {
+            evict();
+            // the slot may have been taken by an order shifted back
+            slot = slot(key);
+        }
+
+        keys[slot] = key;
+        ranks[slot] = rank;
+        referenced[slot] = false;
+        timestamps[slot] = timestamp;
+        size++;
+
+        return true;
+    }
+
+    private void evict() {
+        while (true) {
+            clockHand = clockHand + 1 & mask;
+
+            if (keys[clockHand] == EMPTY) {
+                continue;
+            }
+
+            if (referenced[clockHand]) {
+                // the second chance
+                referenced[clockHand] = false;
+            } else {
+                remove(clockHand);
+
+                return;
+            }
+        }
+    }
+
+    private void remove(int slot) {
+        // backward shift: the following orders of the probe sequence are moved up, so no tombstones are needed
+        int hole = slot;
+        int next = slot;
+
+        while (true) {
+            next = next + 1 & mask;
+
+            if (keys[next] == EMPTY) {
+                break;
+            }
+
+            final int home = (int) keys[next] & mask;
+            // the order can stay where it is, if its home slot is cyclically within (hole, next]
+            final boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+
+            if (!stays) {
+                keys[hole] = keys[next];
+                ranks[hole] = ranks[next];
+                referenced[hole] = referenced[next];
+                timestamps[hole] = timestamps[next];
+                hole = next;
+            }
+        }
+
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the slot of the key, or the empty slot where it would be inserted
+     */
+    private int slot(long key) {
+        int slot = (int) key & mask;
+
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = slot + 1 & mask;
+        }
+
+        return slot;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.ecommerceorderprocessor.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The amounts of money are fixed-point numbers kept in a {@code long} scaled by {@link #SCALE} decimal places, e.g.
+ * {@code 150.25} is {@code 1502500}. Four places cover the minor units of every ISO 4217 currency, so the amounts are
+ * exact whatever the currency of the order, unlike {@code float}.
+ * <p>
+ * The amounts are read from and written to JSON as plain decimal numbers, and formatted without the trailing zeros
+ * (but with at least one decimal place), e.g. {@code 150.0}, {@code 150.25}, {@code 0.0125}.
+ */
+public final class Money {
+
+    /**
+     * The number of decimal places of the amounts.
+     */
+    public static final int SCALE = 4;
+
+    /**
+     * The max length of the formatted amount.
+     */
+    public static final int MAX_LENGTH = 21;
+
+    private static final long FACTOR = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * Formats the amount into the chars, starting at the offset.
+     *
+     * @return the number of chars written
+     */
+    public static int format(long amount, char[] chars, int offset) {
+        int position = offset;
+
+        if (amount < 0) {
+            chars[position++] = '-';
+        }
+
+        // NB! negated separately, the negated Long.MIN_VALUE would overflow
+        long integer = Math.abs(amount / FACTOR);
+        long fraction = Math.abs(amount % FACTOR);
+
+        // the integer part is written backwards, and reversed
+        final int integerStart = position;
+
+        do {
+            chars[position++] = (char) ('0' + integer % 10);
+            integer /= 10;
+        } while (integer > 0);
+
+        for (int i = integerStart, j = position - 1; i < j; i++, j--) {
+            final char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+
+        chars[position++] = '.';
+
+        long divisor = FACTOR / 10;
+
+        do {
+            chars[position++] = (char) ('0' + fraction / divisor);
+            fraction %= divisor;
+            divisor /= 10;
+        } while (fraction > 0);
+
+        return position - offset;
+    }
+
+    /**
+     * Parses the decimal number, rounded half even to {@link #SCALE} places.
+     *
+     * @throws NumberFormatException if it is not a number, or out of range
+     */
+    public static long parse(String value) {
+        return parse(value.toCharArray(), 0, value.length());
+    }
+
+    private static long parse(char[] chars, int offset, int length) {
+        final long amount = parseExact(chars, offset, length);
+
+        return amount != Long.MIN_VALUE ? amount : parseRounded(new String(chars, offset, length));
+    }
+
+    /**
+     * @return the amount, or {@code Long.MIN_VALUE} if it is not a plain decimal number of up to {@link #SCALE} places
+     * (the exponent, the overflow, or anything unexpected is left to {@link BigDecimal})
+     */
+    private static long parseExact(char[] chars, int offset, int length) {
+        int position = offset;
+        final int end = offset + length;
+        final boolean negative = position < end && chars[position] == '-';
+
+        if (negative || position < end && chars[position] == '+') {
+            position++;
+        }
+
+        long integer = 0;
+        int digits = 0;
+
+        while (position < end && isDigit(chars[position]) && digits < 18) {
+            integer = integer * 10 + (chars[position++] - '0');
+            digits++;
+        }
+
+        long fraction = 0;
+        int places = 0;
+
+        if (position < end && chars[position] == '.') {
+            position++;
+
+            while (position < end && isDigit(chars[position]) && places < SCALE) {
+                fraction = fraction * 10 + (chars[position++] - '0');
+                places++;
+            }
+        }
+
+        if (position != end || digits + places == 0 || digits > 14) {
+            return Long.MIN_VALUE;
+        }
+
+        for (int i = places; i < SCALE; i++) {
+            fraction *= 10;
+        }
+
+        final long amount = integer * FACTOR + fraction;
+
+        return negative ? -amount : amount;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static long parseRounded(String value) {
+        try {
+            return new BigDecimal(value).setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("The amount " + value + " is out of range");
+        }
+    }
+
+    public static String toString(long amount) {
+        final char[] chars = new char[MAX_LENGTH];
+
+        return new String(chars, 0, format(amount, chars, 0));
+    }
+
+    /**
+     * Reads the amount from a JSON number (or a string), straight from the text of the number. A {@code null} amount
+     * is read as zero, the same as a missing one.
+     */
+    public static class Deserializer extends StdScalarDeserializer<Long> {
+
+        public Deserializer() {
+            super(Long.TYPE);
+        }
+
+        @Override
+        public Long getNullValue(DeserializationContext context) {
+            // NB! the amounts are primitive, the default null would fail the whole order
+            return 0L;
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            final JsonToken token = parser.currentToken();
+
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Long) context.handleUnexpectedToken(Long.TYPE, parser);
+            }
+
+            try {
+                return parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } catch (NumberFormatException e) {
+                return (Long) context.handleWeirdStringValue(Long.TYPE, parser.getText(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the amount as a JSON number, formatted without {@link String}.
+     */
+    public static class Serializer extends StdScalarSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long amount, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            final char[] chars = new char[MAX_LENGTH];
+
+            generator.writeNumber(chars, 0, format(amount, chars, 0));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.ecommerceorderprocessor.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -12,8 +14,13 @@ public class Order {
     private String customerId;
     private String orderId;
     private List<OrderItem> orderItems;
-    private float orderPaid;
-    private float orderTotal;
+    // the amounts are fixed-point, see Money
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @JsonSerialize(using = Money.Serializer.class)
+    private long orderPaid;
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @JsonSerialize(using = Money.Serializer.class)
+    private long orderTotal;
     private OrderStatusEnum status;
     private LocalDateTime updatedTimestamp;
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.example.ecommerceorderprocessor.model;
 
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.Data;
 
 @Data
 public class OrderItem {
-    private float price;
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @JsonSerialize(using = Money.Serializer.class)
+    private long price;
     private String productId;
     private String productName;
     private int quantity;
@@ -0,0 +1,165 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.model.Order;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends the order updates to CRM without blocking the caller. At most {@code app.crm.max-in-flight} requests are
+ * outstanding at any time and at most {@code app.crm.max-in-flight-per-customer} of them for the same customer,
+ * the rest wait in the queue. The updates of the same order are sent one after another, each only after the
+ * previous one has completed.
+ */
+@Service
+@Slf4j
+public class AsyncCrmSender {
+
+    private final CrmService crmService;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int maxInFlightPerCustomer;
+
+    // all the state below is guarded by this
+    private final Map<String, Integer> inFlightByCustomer = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> lastUpdateByOrder = new HashMap<>();
+    private final ArrayDeque<Update> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    @Autowired
+    public AsyncCrmSender(AppConfig appConfig, CrmService crmService) {
+        this(crmService, appConfig.getCrm().getMaxInFlight(), appConfig.getCrm().getMaxInFlightPerCustomer(),
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crm-", 0).factory()));
+    }
+
+    AsyncCrmSender(CrmService crmService, int maxInFlight, int maxInFlightPerCustomer, ExecutorService executor) {
+        this.crmService = crmService;
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerCustomer = maxInFlightPerCustomer;
+        this.executor = executor;
+    }
+
+    private boolean canSend(Update update) {
+        return inFlight < maxInFlight
+                && inFlightByCustomer.getOrDefault(update.order().getCustomerId(), 0) < maxInFlightPerCustomer;
+    }
+
+    private synchronized void completed(Update update) {
+        release(update);
+
+        // NB! the first waiting update is not necessarily the one to send, its customer can be still at the limit
+        final List<Update> sendable = new ArrayList<>();
+        final Iterator<Update> iterator = waiting.iterator();
+        while (iterator.hasNext() && inFlight < maxInFlight) {
+            final Update next = iterator.next();
+
+            if (canSend(next)) {
+                iterator.remove();
+                reserve(next);
+                sendable.add(next);
+            }
+        }
+
+        // sent only after the iteration, a rejected update completes its future, which may queue the next one
+        for (Update next : sendable) {
+            execute(next);
+        }
+    }
+
+    private void execute(Update update) {
+        try {
+            executor.execute(() -> sendNow(update));
+        } catch (RejectedExecutionException e) {
+            // shut down already, the update is not sent, but it must not hold the in-flight slots nor its order
+            release(update);
+            update.result().completeExceptionally(e);
+        }
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized void ready(Update update) {
+        if (canSend(update)) {
+            send(update);
+        } else {
+            waiting.add(update);
+        }
+    }
+
+    private void release(Update update) {
+        inFlight--;
+        inFlightByCustomer.computeIfPresent(update.order().getCustomerId(), (customerId, count) -> count > 1 ? count - 1 : null);
+        lastUpdateByOrder.remove(update.order().getOrderId(), update.result());
+    }
+
+    private void reserve(Update update) {
+        inFlight++;
+        inFlightByCustomer.merge(update.order().getCustomerId(), 1, Integer::sum);
+    }
+
+    private void send(Update update) {
+        reserve(update);
+        execute(update);
+    }
+
+    private void sendNow(Update update) {
+        try {
+            crmService.sendOrderUpdate(update.order());
+        } catch (RuntimeException e) {
+            completed(update);
+            update.result().completeExceptionally(e);
+
+            return;
+        }
+
+        completed(update);
+        update.result().complete(null);
+    }
+
+    /**
+     * Queues the update of the order to CRM.
+     *
+     * @return the future completed once CRM has accepted the update, or exceptionally if it has failed
+     */
+    public CompletableFuture<Void> sendOrderUpdate(Order order) {
+        final Update update = new Update(order, new CompletableFuture<>());
+        final CompletableFuture<Void> previous;
+
+        synchronized (this) {
+            previous = lastUpdateByOrder.put(order.getOrderId(), update.result());
+        }
+
+        if (previous == null) {
+            ready(update);
+        } else {
+            // the update waits for the previous one regardless of its outcome, the failed update is handled on its own
+            previous.whenComplete((result, e) -> ready(update));
+        }
+
+        return update.result();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // let the outstanding requests finish
+        executor.close();
+    }
+
+    private record Update(Order order, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.model.Order;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the orders to the financial files on its own writer threads, independently of the CRM updates. There is a
+ * writer thread with its own queue per shard of the {@link FinancialService}. The orders queued by any number of
+ * threads are taken in batches: the whole batch is written with a single write and forced to the disk according to the
+ * {@code app.financial.fsync} policy, and only then are the orders of the batch completed. Each writer keeps the orders
+ * of its shard in the sequence they were queued, which keeps also the updates of the same order in sequence.
+ */
+@Service
+@Slf4j
+public class AsyncFinancialWriter {
+
+    private final int batchSize;
+    private final FinancialService financialService;
+    private final AppConfig.FsyncPolicy fsync;
+    private final long fsyncIntervalNanos;
+    private final BlockingQueue<PendingOrder>[] queues;
+    private final Thread[] writerThreads;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public AsyncFinancialWriter(AppConfig appConfig, FinancialService financialService) {
+        this(financialService, appConfig.getFinancial().getBatchSize(), appConfig.getFinancial().getFsync(), appConfig.getFinancial().getFsyncInterval());
+    }
+
+    AsyncFinancialWriter(FinancialService financialService, int batchSize, AppConfig.FsyncPolicy fsync, Duration fsyncInterval) {
+        this.financialService = financialService;
+        this.batchSize = batchSize;
+        this.fsync = fsync;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+
+        final int shards = financialService.getShards();
+
+        //noinspection unchecked
+        queues = new BlockingQueue[shards];
+        writerThreads = new Thread[shards];
+
+        for (int shard = 0; shard < shards; shard++) {
+            final int writerShard = shard;
+
+            queues[shard] = new LinkedBlockingQueue<>();
+            writerThreads[shard] = Thread.ofPlatform()
+                    .name(shards == 1 ? "financial-writer" : "financial-writer-" + shard)
+                    .start(() -> run(writerShard));
+        }
+    }
+
+    private static void complete(List<PendingOrder> orders) {
+        for (PendingOrder order : orders) {
+            order.result().complete(null);
+        }
+    }
+
+    private static void fail(List<PendingOrder> orders, Exception e) {
+        for (PendingOrder order : orders) {
+            order.result().completeExceptionally(e);
+        }
+    }
+
+    private void run(int shard) {
+        final BlockingQueue<PendingOrder> queue = queues[shard];
+        final List<PendingOrder> batch = new ArrayList<>(batchSize);
+        final List<PendingOrder> written = new ArrayList<>(batchSize);
+        // the orders written, but waiting for the next fsync (interval policy)
+        final List<PendingOrder> unsynced = new ArrayList<>();
+        long nextSync = System.nanoTime() + fsyncIntervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                final PendingOrder first = unsynced.isEmpty()
+                        ? queue.poll(100, TimeUnit.MILLISECONDS)
+                        : queue.poll(Math.max(0, nextSync - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // write what is queued and stop
+                running = false;
+            }
+
+            if (batch.isEmpty() && unsynced.isEmpty()) {
+                continue;
+            }
+
+            for (PendingOrder order : batch) {
+                try {
+                    financialService.appendOrder(shard, order.order());
+                    written.add(order);
+                } catch (Exception e) {
+                    order.result().completeExceptionally(e);
+                }
+            }
+
+            try {
+                switch (fsync) {
+                    case BATCH -> {
+                        financialService.flush(shard, true);
+                        complete(written);
+                    }
+                    case INTERVAL -> {
+                        financialService.flush(shard, false);
+                        unsynced.addAll(written);
+
+                        if (!unsynced.isEmpty() && System.nanoTime() - nextSync >= 0) {
+                            financialService.flush(shard, true);
+                            complete(unsynced);
+                            unsynced.clear();
+                        }
+                    }
+                    case NEVER -> {
+                        financialService.flush(shard, false);
+                        complete(written);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Failed to write {} orders into the financial output file", written.size() + unsynced.size(), e);
+
+                fail(written, e);
+                fail(unsynced, e);
+                unsynced.clear();
+            }
+
+            if (unsynced.isEmpty()) {
+                nextSync = System.nanoTime() + fsyncIntervalNanos;
+            }
+
+            batch.clear();
+            written.clear();
+        }
+
+        try {
+            financialService.flush(shard, true);
+            complete(unsynced);
+        } catch (Exception e) {
+            log.error("Failed to write {} orders into the financial output file", unsynced.size(), e);
+
+            fail(unsynced, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // let the queued orders be written
+        running = false;
+
+        for (Thread writerThread : writerThreads) {
+            writerThread.join();
+        }
+
+        // NB! the orders queued concurrently with the shutdown might have missed the writer threads
+        final List<PendingOrder> rejected = new ArrayList<>();
+
+        for (BlockingQueue<PendingOrder> queue : queues) {
+            queue.drainTo(rejected);
+        }
+        fail(rejected, new RejectedExecutionException("The financial writer has been stopped"));
+    }
+
+    /**
+     * Queues the order to be written to the financial file.
+     *
+     * @return the future completed once the order has been written (and forced to the disk, unless the fsync policy
+     * is never), or exceptionally if it has failed
+     */
+    public CompletableFuture<Void> writeOrderToFile(Order order) {
+        final PendingOrder pendingOrder = new PendingOrder(order, new CompletableFuture<>());
+
+        if (!running) {
+            pendingOrder.result().completeExceptionally(new RejectedExecutionException("The financial writer has been stopped"));
+        } else {
+            queues[financialService.shardOf(order)].add(pendingOrder);
+        }
+
+        return pendingOrder.result();
+    }
+
+    private record PendingOrder(Order order, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.ecommerceorderprocessor.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only file of records, one per line: the tab separated fields followed by the CRC32 checksum of the line.
+ * The last valid record is read from the tail of the file only, the records spoiled by a crash are skipped.
+ */
+@Slf4j
+class ChecksummedLog implements Closeable {
+
+    // the tail long enough to contain some complete records
+    private static final int TAIL_LENGTH = 4096;
+
+    private FileChannel channel;
+    private final Path file;
+
+    ChecksummedLog(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static String checksum(String line) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(line.getBytes(StandardCharsets.UTF_8));
+
+        return String.format("%08x", crc32.getValue());
+    }
+
+    private static ByteBuffer encode(String... fields) {
+        final String line = String.join("\t", fields);
+
+        return ByteBuffer.wrap((line + "\t" + checksum(line) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Optional<String[]> parse(String line) {
+        final int lastTab = line.lastIndexOf('\t');
+
+        if (lastTab < 0 || !checksum(line.substring(0, lastTab)).equals(line.substring(lastTab + 1))) {
+            return Optional.empty();
+        }
+
+        return Optional.of(line.substring(0, lastTab).split("\t"));
+    }
+
+    void append(String... fields) throws IOException {
+        final ByteBuffer record = encode(fields);
+
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replaces all the records by the given one, atomically.
+     */
+    void compact(String... fields) throws IOException {
+        final Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(compacted);
+
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final ByteBuffer record = encode(fields);
+            while (record.hasRemaining()) {
+                compactedChannel.write(record);
+            }
+
+            compactedChannel.force(true);
+        }
+
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the last valid record from the tail, and truncates the record torn at the end by a crash if any.
+     *
+     * @param filter the records to look for
+     */
+    Optional<String[]> lastRecord(Predicate<String[]> filter) throws IOException {
+        final long size = channel.size();
+        final ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, TAIL_LENGTH));
+
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, size - tail.capacity() + tail.position()) < 0) {
+                break;
+            }
+        }
+
+        int end = tail.position();
+
+        if (end > 0 && tail.get(end - 1) != '\n') {
+            // NB! the torn record would spoil also the next record appended after it
+            while (end > 0 && tail.get(end - 1) != '\n') {
+                end--;
+            }
+
+            channel.truncate(size - tail.position() + end);
+
+            log.warn("The torn record at the end of {} has been truncated", file.getFileName());
+        }
+
+        final String[] lines = new String(tail.array(), 0, end, StandardCharsets.UTF_8).split("\n");
+
+        // the first line is likely cut by the tail
+        for (int i = lines.length - 1; i >= 0; i--) {
+            final Optional<String[]> record = parse(lines[i]).filter(filter);
+
+            if (record.isPresent()) {
+                return record;
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Reads all the valid records from the start of the file.
+     *
+     * @param filter the records to look for
+     */
+    List<String[]> records(Predicate<String[]> filter) throws IOException {
+        final List<String[]> records = new ArrayList<>();
+
+        // NB! not Files.newBufferedReader, a record torn by a crash might not be valid UTF-8, it is skipped by its checksum
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                parse(line).filter(filter).ifPresent(records::add);
+            }
+        }
+
+        return records;
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+    }
+}
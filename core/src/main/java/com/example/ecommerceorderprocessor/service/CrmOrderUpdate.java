@@ -0,0 +1,68 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.crm.model.OrderUpdateRequest;
+import com.example.ecommerceorderprocessor.model.Money;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * The body of the CRM order update, the same JSON as of {@link OrderUpdateRequest}, but written straight from the
+ * order: the items are written one by one as they are read from the order, and the amounts are formatted by
+ * {@link Money} into the generator, exactly and without the intermediate {@code Float}s and strings.
+ */
+@JsonSerialize(using = CrmOrderUpdate.Serializer.class)
+record CrmOrderUpdate(Order order, OrderUpdateRequest.StatusEnum status) {
+
+    public static class Serializer extends StdSerializer<CrmOrderUpdate> {
+
+        public Serializer() {
+            super(CrmOrderUpdate.class);
+        }
+
+        private static void writeAmount(JsonGenerator generator, String fieldName, long amount, char[] chars) throws IOException {
+            generator.writeFieldName(fieldName);
+            generator.writeNumber(chars, 0, Money.format(amount, chars, 0));
+        }
+
+        @Override
+        public void serialize(CrmOrderUpdate update, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            final Order order = update.order();
+            final char[] chars = new char[Money.MAX_LENGTH];
+
+            generator.writeStartObject();
+            generator.writeStringField("externalOrderId", order.getOrderId());
+            generator.writeStringField("status", update.status().getValue());
+
+            generator.writeObjectFieldStart("financials");
+            writeAmount(generator, "orderTotal", order.getOrderTotal(), chars);
+            writeAmount(generator, "orderPaid", order.getOrderPaid(), chars);
+            generator.writeStringField("currencyCode", order.getCurrencyCode());
+            generator.writeEndObject();
+
+            generator.writeArrayFieldStart("items");
+
+            for (OrderItem orderItem : ofNullable(order.getOrderItems()).orElse(List.of())) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("product");
+                generator.writeStringField("id", orderItem.getProductId());
+                generator.writeStringField("name", orderItem.getProductName());
+                generator.writeEndObject();
+                generator.writeNumberField("quantity", orderItem.getQuantity());
+                writeAmount(generator, "price", orderItem.getPrice(), chars);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
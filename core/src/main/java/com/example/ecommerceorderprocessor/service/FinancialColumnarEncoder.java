@@ -0,0 +1,240 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes the financial records into the blocks of the {@link FinancialColumnarFormat}: the values are collected
+ * column by column, and the block is assembled when it is written. Once warmed up, it does not allocate anything
+ * per record.
+ */
+final class FinancialColumnarEncoder implements FinancialRecordEncoder {
+
+    // the block marker, the number of rows, the column lengths, the checksum and the end marker
+    private static final int BLOCK_OVERHEAD = 1 + 4 + FinancialColumnarFormat.COLUMNS.length * 4 + 4 + 1;
+
+    private byte[] block;
+    private final Column[] columns = new Column[FinancialColumnarFormat.COLUMNS.length];
+    private final CRC32 crc32 = new CRC32();
+    private boolean header;
+    private boolean markedHeader;
+    private int markedRows;
+    private int rows;
+
+    FinancialColumnarEncoder(int initialCapacity) {
+        block = new byte[initialCapacity];
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(Math.max(16, initialCapacity / columns.length));
+        }
+    }
+
+    private static int putInt(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+
+        return position + 4;
+    }
+
+    @Override
+    public void encode(Order order, OrderItem orderItem) {
+        // NB! in the sequence of FinancialColumnarFormat.COLUMNS
+        columns[0].writeString(order.getOrderId());
+        columns[1].writeString(orderItem.getProductName());
+        columns[2].writeString(orderItem.getProductId());
+        columns[3].writeNumber(orderItem.getQuantity());
+        columns[4].writeNumber(orderItem.getPrice());
+        columns[5].writeNumber(order.getOrderTotal());
+        columns[6].writeNumber(order.getOrderPaid());
+        columns[7].writeString(order.getCurrencyCode());
+        rows++;
+    }
+
+    @Override
+    public void encodeHeader() {
+        header = true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, capacity));
+        }
+    }
+
+    @Override
+    public int length() {
+        int length = header ? FinancialColumnarFormat.HEADER.length : 0;
+
+        if (rows > 0) {
+            length += BLOCK_OVERHEAD;
+
+            for (Column column : columns) {
+                length += column.length;
+            }
+        }
+
+        return length;
+    }
+
+    @Override
+    public void mark() {
+        markedHeader = header;
+        markedRows = rows;
+
+        for (Column column : columns) {
+            column.mark();
+        }
+    }
+
+    @Override
+    public void reset() {
+        header = false;
+        markedHeader = false;
+        markedRows = 0;
+        rows = 0;
+
+        for (Column column : columns) {
+            column.reset();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        header = markedHeader;
+        rows = markedRows;
+
+        for (Column column : columns) {
+            column.rollback();
+        }
+    }
+
+    @Override
+    public int writeTo(FinancialOutputFile file) throws IOException {
+        final int length = length();
+
+        if (length == 0) {
+            return 0;
+        }
+
+        ensureCapacity(length);
+        int position = 0;
+
+        if (header) {
+            System.arraycopy(FinancialColumnarFormat.HEADER, 0, block, 0, FinancialColumnarFormat.HEADER.length);
+            position = FinancialColumnarFormat.HEADER.length;
+        }
+
+        if (rows > 0) {
+            final int blockStart = position;
+
+            block[position++] = FinancialColumnarFormat.BLOCK;
+            position = putInt(block, position, rows);
+
+            for (Column column : columns) {
+                position = putInt(block, position, column.length);
+            }
+
+            for (Column column : columns) {
+                System.arraycopy(column.buffer, 0, block, position, column.length);
+                position += column.length;
+            }
+
+            crc32.reset();
+            crc32.update(block, blockStart + 1, position - blockStart - 1);
+            position = putInt(block, position, (int) crc32.getValue());
+            block[position++] = FinancialColumnarFormat.BLOCK_END;
+        }
+
+        file.write(block, 0, position);
+        reset();
+
+        return position;
+    }
+
+    /**
+     * The values of a column of the block. The numbers are the zigzag varints of the difference from the value of the
+     * previous row, the strings are the varint of their UTF-8 length + 2 followed by the bytes, 0 is {@code null} and
+     * 1 is the same as the previous row.
+     */
+    private static final class Column {
+
+        private byte[] buffer;
+        private int length;
+        private int markedLength;
+        private long markedPreviousNumber;
+        private String markedPreviousString;
+        private long previousNumber;
+        private String previousString;
+
+        Column(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        void mark() {
+            markedLength = length;
+            markedPreviousNumber = previousNumber;
+            markedPreviousString = previousString;
+        }
+
+        void reset() {
+            length = 0;
+            previousNumber = 0;
+            previousString = null;
+            mark();
+        }
+
+        void rollback() {
+            // NB! the values are the differences from the previous row, so it is restored as well
+            length = markedLength;
+            previousNumber = markedPreviousNumber;
+            previousString = markedPreviousString;
+        }
+
+        void writeNumber(long value) {
+            final long delta = value - previousNumber;
+
+            writeVarLong(delta << 1 ^ delta >> 63);
+            previousNumber = value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+            } else if (value.equals(previousString)) {
+                writeVarLong(1);
+            } else {
+                final int utf8Length = Utf8.length(value);
+
+                writeVarLong(utf8Length + 2);
+                ensureCapacity(utf8Length);
+
+                length = Utf8.encode(value, buffer, length);
+            }
+
+            previousString = value;
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+
+            buffer[length++] = (byte) value;
+        }
+    }
+}
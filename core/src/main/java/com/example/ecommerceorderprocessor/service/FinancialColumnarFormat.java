@@ -0,0 +1,237 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Money;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * The compact binary files of typed columns, for the jobs loading the records in bulk. The file starts with the
+ * header, followed by the blocks of records (a block per write):
+ * <pre>
+ * header:  "FCOL" version(1) columns(8) [type name-length name]... scale(4) '\n'
+ * block:   'B' rows column-lengths... columns... crc32 'E'
+ * </pre>
+ * The column types are 1 string, 2 integer and 3 amount (the fixed-point {@link Money}, the scale is in the header).
+ * The rows, the column lengths and the CRC32 of the block (from the rows to the end of the columns) are big-endian
+ * ints. Each column holds the values of all the rows of the block, the numbers as the zigzag varints of the
+ * difference from the previous row, the strings as the varint of their UTF-8 length + 2 followed by the bytes, where
+ * 0 is {@code null} and 1 the same value as in the previous row. So the values repeated for every item of an order
+ * take a byte each. The blocks are independent of each other, they can be read in parallel.
+ */
+class FinancialColumnarFormat implements FinancialExportFormat {
+
+    static final byte BLOCK = 'B';
+    static final byte BLOCK_END = 'E';
+    static final String[] COLUMNS = FinancialCsvEncoder.COLUMNS;
+    static final byte[] HEADER;
+
+    private static final byte TYPE_AMOUNT = 3;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_STRING = 1;
+    private static final byte[] TYPES = {TYPE_STRING, TYPE_STRING, TYPE_STRING, TYPE_INTEGER, TYPE_AMOUNT, TYPE_AMOUNT, TYPE_AMOUNT, TYPE_STRING};
+    private static final byte VERSION = 1;
+
+    static {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.writeBytes("FCOL".getBytes(StandardCharsets.US_ASCII));
+        header.write(VERSION);
+        header.write(COLUMNS.length);
+
+        for (int i = 0; i < COLUMNS.length; i++) {
+            header.write(TYPES[i]);
+            header.write(COLUMNS[i].length());
+            header.writeBytes(COLUMNS[i].getBytes(StandardCharsets.US_ASCII));
+        }
+
+        header.write(Money.SCALE);
+        header.write('\n');
+
+        HEADER = header.toByteArray();
+    }
+
+    /**
+     * Reads the columns of the next block.
+     *
+     * @return the number of the rows, or -1 if there is no complete block anymore
+     */
+    private static int readBlock(DataInputStream input, byte[][] columns) throws IOException {
+        try {
+            if (input.read() != BLOCK) {
+                return -1;
+            }
+
+            final CRC32 crc32 = new CRC32();
+            final int rows = input.readInt();
+            final int[] lengths = new int[COLUMNS.length];
+
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = input.readInt();
+            }
+
+            final byte[] blockHeader = new byte[4 + lengths.length * 4];
+            writeInt(blockHeader, 0, rows);
+
+            for (int i = 0; i < lengths.length; i++) {
+                writeInt(blockHeader, 4 + i * 4, lengths[i]);
+            }
+
+            crc32.update(blockHeader);
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = input.readNBytes(lengths[i]);
+
+                if (columns[i].length < lengths[i]) {
+                    return -1;
+                }
+
+                crc32.update(columns[i]);
+            }
+
+            if (input.readInt() != (int) crc32.getValue() || input.read() != BLOCK_END) {
+                return -1;
+            }
+
+            return rows;
+        } catch (EOFException e) {
+            // the torn block
+            return -1;
+        }
+    }
+
+    private static void readHeader(DataInputStream input, File file) throws IOException {
+        final byte[] header = input.readNBytes(HEADER.length);
+
+        if (!Arrays.equals(header, HEADER)) {
+            throw new IOException("The file " + file + " is not a financial columnar file of version " + VERSION);
+        }
+    }
+
+    /**
+     * Reads the records of the file, the values of each in the sequence of {@link #COLUMNS}: the strings as
+     * {@link String}, the integers as {@link Integer} and the amounts as {@link Long}. The file can be still written,
+     * it is read up to its last complete block.
+     */
+    static void read(File file, Consumer<Object[]> records) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            readHeader(input, file);
+
+            final byte[][] columns = new byte[COLUMNS.length][];
+            int rows;
+
+            while ((rows = readBlock(input, columns)) >= 0) {
+                final Object[][] values = new Object[rows][COLUMNS.length];
+
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    final ColumnReader reader = new ColumnReader(columns[column]);
+
+                    for (int row = 0; row < rows; row++) {
+                        values[row][column] = switch (TYPES[column]) {
+                            case TYPE_STRING -> reader.readString();
+                            case TYPE_INTEGER -> (int) reader.readNumber();
+                            default -> reader.readNumber();
+                        };
+                    }
+                }
+
+                for (Object[] record : values) {
+                    records.accept(record);
+                }
+            }
+        }
+    }
+
+    private static void writeInt(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+    }
+
+    @Override
+    public int countRecords(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return 0;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            readHeader(input, file);
+
+            final byte[][] columns = new byte[COLUMNS.length][];
+            int records = 0;
+            int rows;
+
+            while ((rows = readBlock(input, columns)) >= 0) {
+                records += rows;
+            }
+
+            return records;
+        }
+    }
+
+    @Override
+    public String extension() {
+        return "fcol";
+    }
+
+    @Override
+    public FinancialRecordEncoder newEncoder(int initialCapacity) {
+        return new FinancialColumnarEncoder(initialCapacity);
+    }
+
+    private static final class ColumnReader {
+
+        private final byte[] bytes;
+        private int position;
+        private long previousNumber;
+        private String previousString;
+
+        ColumnReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readNumber() {
+            final long zigzag = readVarLong();
+
+            previousNumber += zigzag >>> 1 ^ -(zigzag & 1);
+
+            return previousNumber;
+        }
+
+        String readString() {
+            final long length = readVarLong();
+
+            if (length == 0) {
+                previousString = null;
+            } else if (length > 1) {
+                previousString = new String(bytes, position, (int) length - 2, StandardCharsets.UTF_8);
+                position += (int) length - 2;
+            }
+
+            return previousString;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+
+            for (int shift = 0; ; shift += 7) {
+                final byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
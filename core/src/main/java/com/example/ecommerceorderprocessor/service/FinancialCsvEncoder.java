@@ -0,0 +1,161 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Money;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes the financial CSV rows straight from the order and its items into a reusable UTF-8 byte buffer. Once
+ * warmed up, it does not allocate anything per row.
+ * <p>
+ * The output is the same as of opencsv {@code CSVWriter} with no quote character and the default escape character,
+ * which the financial files have always been written with: the values are not quoted, but the separator, the escape
+ * character ({@code "}) and the line feed are escaped by prepending {@code "}; the amounts are formatted by
+ * {@link Money#format(long, char[], int)} (the same as the former {@code float} amounts, but exact), {@code null} is
+ * written as an empty value and the lines end with {@code \n}.
+ */
+public final class FinancialCsvEncoder implements FinancialRecordEncoder {
+
+    public static final String[] COLUMNS = {"order_id", "product_name", "product_id", "quantity", "product_price", "order_total", "order_paid_amount", "currency_code"};
+
+    private static final char ESCAPE = '"';
+    private static final char NO_QUOTE = '\u0000';
+    private static final char SEPARATOR = ',';
+
+    private final char[] amount = new char[Money.MAX_LENGTH];
+    private byte[] buffer;
+    private int length;
+    private int markedLength;
+    // NB! StringBuilder formats the numbers in place, unlike Integer.toString(int) it does not create a string
+    private final StringBuilder number = new StringBuilder(32);
+
+    public FinancialCsvEncoder(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    private static boolean isEscaped(int c) {
+        return c == ESCAPE || c == SEPARATOR || c == '\n' || c == NO_QUOTE;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Appends the header row.
+     */
+    @Override
+    public void encodeHeader() {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                write(SEPARATOR);
+            }
+
+            write(COLUMNS[i]);
+        }
+
+        write('\n');
+    }
+
+    /**
+     * Appends the row of the order item.
+     */
+    @Override
+    public void encode(Order order, OrderItem orderItem) {
+        write(order.getOrderId());
+        write(SEPARATOR);
+        write(orderItem.getProductName());
+        write(SEPARATOR);
+        write(orderItem.getProductId());
+        write(SEPARATOR);
+        write(orderItem.getQuantity());
+        write(SEPARATOR);
+        writeAmount(orderItem.getPrice());
+        write(SEPARATOR);
+        writeAmount(order.getOrderTotal());
+        write(SEPARATOR);
+        writeAmount(order.getOrderPaid());
+        write(SEPARATOR);
+        write(order.getCurrencyCode());
+        write('\n');
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public void mark() {
+        markedLength = length;
+    }
+
+    /**
+     * Discards the encoded rows, the buffer is reused.
+     */
+    @Override
+    public void reset() {
+        length = 0;
+        markedLength = 0;
+    }
+
+    @Override
+    public void rollback() {
+        length = markedLength;
+    }
+
+    @Override
+    public int writeTo(FinancialOutputFile file) throws IOException {
+        final int written = length;
+
+        if (written > 0) {
+            file.write(buffer, 0, written);
+            length = 0;
+            markedLength = 0;
+        }
+
+        return written;
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void write(int value) {
+        number.setLength(0);
+        number.append(value);
+        write(number);
+    }
+
+    private void write(CharSequence value) {
+        if (value == null) {
+            return;
+        }
+
+        // the escape character doubles the size, 3 bytes are enough for any UTF-16 char
+        ensureCapacity(value.length() * 4);
+
+        length = Utf8.encode(value, buffer, length, FinancialCsvEncoder::isEscaped, (byte) ESCAPE);
+    }
+
+    private void writeAmount(long value) {
+        final int amountLength = Money.format(value, amount, 0);
+
+        ensureCapacity(amountLength);
+
+        // the amount is ASCII, nothing to escape
+        for (int i = 0; i < amountLength; i++) {
+            buffer[length++] = (byte) amount[i];
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ecommerceorderprocessor.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+/**
+ * The CSV files with the header row and a row per record, see {@link FinancialCsvEncoder}.
+ */
+class FinancialCsvFormat implements FinancialExportFormat {
+
+    @Override
+    public int countRecords(File file) throws IOException {
+        if (file.exists()) {
+            try (Stream<String> lines = Files.lines(file.toPath())) {
+                return (int) lines.count() - 1;
+            }
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public String extension() {
+        return "csv";
+    }
+
+    @Override
+    public FinancialRecordEncoder newEncoder(int initialCapacity) {
+        return new FinancialCsvEncoder(initialCapacity);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The format of the financial output files, selected by {@code app.financial.format}. The files of every format are
+ * appended, rotated and named by the same rules, only their extension is given by the format.
+ * <p>
+ * The encoded bytes are appended to the file as they are written by {@link FinancialRecordEncoder#writeTo}, and the
+ * file might be truncated back to the length after any of the writes (the journal recovery), so every write must
+ * leave the file readable. Also the last byte written must not be zero (see
+ * {@link MappedFinancialOutputFile#truncateUnwritten}).
+ */
+interface FinancialExportFormat {
+
+    static FinancialExportFormat of(AppConfig.ExportFormat format) {
+        return switch (format) {
+            case COLUMNAR -> new FinancialColumnarFormat();
+            case CSV -> new FinancialCsvFormat();
+        };
+    }
+
+    /**
+     * Counts the records of the file, 0 if it does not exist.
+     */
+    int countRecords(File file) throws IOException;
+
+    /**
+     * @return the extension of the files, without the dot
+     */
+    String extension();
+
+    FinancialRecordEncoder newEncoder(int initialCapacity);
+}
@@ -0,0 +1,174 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Seals the complete (rotated) financial output files off the writer threads: each file is compressed into
+ * {@code <file>.gz}, described by the {@code <file>.gz.seal} sidecar and then deleted. The sidecar is published last,
+ * so once it exists the compressed file is complete:
+ * <pre>
+ * file=fin_orders_01012025000000.csv.gz
+ * rows=1000
+ * size=20480
+ * sha256=9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08
+ * </pre>
+ * Both are written into temporary files first, forced to the disk and renamed, so a crash leaves either the original
+ * file (sealed again at the next start) or the published result. The sealing runs on {@code app.financial.seal-threads}
+ * threads with a queue of {@code app.financial.seal-queue-capacity} files; when the sealing falls that much behind,
+ * the writer seals the file itself, which slows down the writing rather than piling up the files.
+ */
+@Slf4j
+class FinancialFileSealer {
+
+    static final String COMPRESSED_EXTENSION = ".gz";
+    static final String SEAL_EXTENSION = ".seal";
+
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final ThreadPoolExecutor executor;
+    // the files queued or being sealed, not to seal them twice
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    FinancialFileSealer(AppConfig.Financial financial) {
+        executor = new ThreadPoolExecutor(financial.getSealThreads(), financial.getSealThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(financial.getSealQueueCapacity()),
+                Thread.ofPlatform().name("financial-sealer-", 0).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform, the renames are durable with the next journal sync at the latest
+            log.debug("Failed to force the directory {}", directory, e);
+        }
+    }
+
+    /**
+     * @return whether the file has been sealed (and deleted)
+     */
+    static boolean isSealed(Path file) {
+        return Files.exists(file.resolveSibling(file.getFileName() + COMPRESSED_EXTENSION + SEAL_EXTENSION));
+    }
+
+    private static void sealFile(Path file, int rows) throws IOException {
+        final Path compressed = file.resolveSibling(file.getFileName() + COMPRESSED_EXTENSION);
+        final Path seal = compressed.resolveSibling(compressed.getFileName() + SEAL_EXTENSION);
+
+        if (Files.exists(seal) && Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(seal)) <= 0) {
+            // sealed, but not deleted before a crash (unless written into again since then, then it is sealed again)
+            Files.deleteIfExists(file);
+
+            return;
+        }
+
+        final Path compressedTemporary = compressed.resolveSibling(compressed.getFileName() + TEMPORARY_EXTENSION);
+        final Path sealTemporary = seal.resolveSibling(seal.getFileName() + TEMPORARY_EXTENSION);
+        final MessageDigest digest = sha256();
+
+        try (InputStream input = Files.newInputStream(file);
+             FileChannel channel = FileChannel.open(compressedTemporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             GZIPOutputStream output = new GZIPOutputStream(new DigestOutputStream(Channels.newOutputStream(channel), digest), 64 * 1024)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+
+            while ((read = input.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+
+            output.finish();
+            channel.force(true);
+        }
+
+        final String description = "file=" + compressed.getFileName() + "\n"
+                + "rows=" + rows + "\n"
+                + "size=" + Files.size(compressedTemporary) + "\n"
+                + "sha256=" + HexFormat.of().formatHex(digest.digest()) + "\n";
+
+        try (FileChannel channel = FileChannel.open(sealTemporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(description.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+
+        // NB! the compressed file is published first, the seal says it is complete
+        Files.move(compressedTemporary, compressed, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(sealTemporary, seal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file.getParent());
+
+        Files.delete(file);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Queues the complete file to be sealed.
+     *
+     * @param rows the number of the records in the file, as counted by the writer (or its format), whatever the rows
+     *             are encoded into
+     */
+    void seal(File file, int rows) {
+        final Path path = file.toPath().toAbsolutePath();
+
+        if (!pending.add(path)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                sealFile(path, rows);
+
+                log.debug("The financial output file {} has been sealed", path);
+            } catch (Exception e) {
+                // NB! the file stays as it is, it is sealed again at the next start
+                log.error("Failed to seal the financial output file {}", path, e);
+            } finally {
+                pending.remove(path);
+            }
+        });
+    }
+
+    /**
+     * Lets the queued files be sealed, the rest is sealed at the next start.
+     */
+    void shutdown() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("The sealing of {} financial output files has not finished, they are sealed at the next start", pending.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,642 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Appends the orders into the sequence of financial output files of one shard. It keeps the current file open and its
+ * state in memory, restoring it from the disk only once.
+ */
+@Slf4j
+class FinancialFileWriter {
+
+    // the encoded rows are written into the file once there is this much of them
+    private static final int WRITE_THRESHOLD = 64 * 1024;
+
+    private final AppConfig appConfig;
+    private final FinancialExportFormat format;
+    // null unless the rotated files are sealed
+    private final FinancialFileSealer sealer;
+    private final int shard;
+    private final int shards;
+
+    // the state of the current output file, all guarded by this
+    private Instant currentCreated;
+    // the current output file relative to the output directory
+    private String currentFileName;
+    private long currentLength;
+    private File currentOutputFile;
+    private int currentRecords;
+    private final FinancialRecordEncoder encoder;
+    // whether the rows of the orders appended since the last commit have been discarded, the next flush fails them
+    private boolean discarded;
+    private String fileNamePattern;
+    private FinancialJournal journal;
+    private String lastOrderId;
+    private FinancialManifest manifest;
+    private String outputDirectory;
+    private FinancialOutputFile outputFile;
+    // whether there are orders appended since the last commit
+    private boolean pending;
+    // the output directory whose files left unsealed by the previous run have been sealed
+    private String sealingResumedDirectory;
+    // whether there are rows written since the last journal record
+    private boolean uncommitted;
+
+    FinancialFileWriter(AppConfig appConfig, FinancialExportFormat format, FinancialFileSealer sealer, int shard, int shards) {
+        this.appConfig = appConfig;
+        this.format = format;
+        this.encoder = format.newEncoder(WRITE_THRESHOLD + 4 * 1024);
+        this.sealer = sealer;
+        this.shard = shard;
+        this.shards = shards;
+    }
+
+    private static Instant creationTime(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toInstant();
+    }
+
+    private static File getRecentlyModifiedFile(@NotEmpty String outputDirectory, @NotEmpty String fileNamePattern) {
+        final File[] files = new File(outputDirectory).listFiles();
+
+        return Arrays.stream(files != null ? files : new File[0])
+                .filter(File::isFile)
+                .filter(file -> matchesFileNamePattern(file, fileNamePattern))
+                .max(Comparator.comparingLong(File::lastModified))
+                .orElse(null);
+    }
+
+    private static boolean matchesFileNamePattern(File file, String fileNamePattern) {
+        final String extension = StringUtils.substringAfterLast(fileNamePattern, ".");
+        final String outputFileNamePrefix = StringUtils.substringBefore(fileNamePattern, "{");
+        // e.g. the shard suffix
+        final String outputFileNameSuffix = StringUtils.substringAfterLast(FilenameUtils.removeExtension(fileNamePattern), "}");
+
+        return StringUtils.equalsIgnoreCase(FilenameUtils.getExtension(file.getName()), extension)
+                && StringUtils.startsWithIgnoreCase(file.getName(), outputFileNamePrefix)
+                && StringUtils.endsWithIgnoreCase(FilenameUtils.removeExtension(file.getName()), outputFileNameSuffix);
+    }
+
+    private void ensureOutputDirectoryExistsAndValidate(String outputDirectory) {
+        final Path directory = Paths.get(outputDirectory);
+
+        if (!Files.exists(directory)) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create output directory: " + outputDirectory, e);
+            }
+        }
+
+        // validate the path is a directory
+        if (!Files.isDirectory(directory)) {
+            throw new RuntimeException("Output directory is not a valid directory: " + outputDirectory);
+        }
+
+        // validate the directory is writable
+        if (!Files.isWritable(directory)) {
+            throw new RuntimeException("Output directory is not writable: " + outputDirectory);
+        }
+    }
+
+    /**
+     * @param sequence appended to the name unless 0, to tell apart the files named within the same time unit
+     */
+    private String generateOutputFileName(int sequence) {
+        String fileNamePattern = appConfig.getFinancial().getFileNamePattern();
+
+        if (fileNamePattern.contains("{datetime:")) {
+            final String datetimePattern = StringUtils.substringBetween(fileNamePattern, "{datetime:", "}");
+            final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern(datetimePattern));
+
+            fileNamePattern = StringUtils.replace(fileNamePattern, "{datetime:" + datetimePattern + "}", timestamp);
+        }
+
+        if (sequence > 0) {
+            // NB! before the shard suffix (and the extension), so the name still matches the file name pattern
+            final String extension = FilenameUtils.getExtension(fileNamePattern);
+
+            fileNamePattern = FilenameUtils.removeExtension(fileNamePattern) + "-" + sequence + (extension.isEmpty() ? "" : "." + extension);
+        }
+
+        return outputFileName(fileNamePattern);
+    }
+
+    private String generateOutputPath() {
+        return generateOutputPath(0);
+    }
+
+    private String generateOutputPath(int sequence) {
+        final String fileName = generateOutputFileName(sequence);
+        final String partitionPattern = appConfig.getFinancial().getPartitionPattern();
+
+        if (StringUtils.isEmpty(partitionPattern)) {
+            return fileName;
+        }
+
+        // the files of each day (hour, ...) in their own subdirectory
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern(partitionPattern)) + "/" + fileName;
+    }
+
+    /**
+     * Closes the output file, the journal and the manifest without committing anything.
+     */
+    private void releaseFiles() {
+        if (outputFile != null) {
+            try {
+                outputFile.close();
+            } catch (IOException e) {
+                log.error("Failed to close the financial output file {}", currentOutputFile, e);
+            }
+
+            encoder.reset();
+            outputFile = null;
+        }
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Failed to close the financial journal", e);
+            }
+
+            journal = null;
+        }
+
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (IOException e) {
+                log.error("Failed to close the financial manifest", e);
+            }
+
+            manifest = null;
+        }
+    }
+
+    private void closeOutputFile() throws IOException {
+        if (outputFile == null) {
+            return;
+        }
+
+        writeEncoded();
+
+        // NB! the rest of the rotated file must not wait for the next fsync, which goes into another file
+        final boolean sync = appConfig.getFinancial().getFsync() != AppConfig.FsyncPolicy.NEVER;
+
+        if (sync) {
+            outputFile.sync();
+        }
+
+        outputFile.close();
+        outputFile = null;
+
+        commit(sync);
+    }
+
+    private void commit(boolean sync) throws IOException {
+        if (journal != null && uncommitted) {
+            journal.committed(currentFileName, currentLength, currentRecords, lastOrderId);
+
+            if (sync) {
+                journal.sync();
+            }
+        }
+
+        pending = false;
+        uncommitted = false;
+    }
+
+    private void openOutputFile() throws IOException {
+        if (currentOutputFile == null) {
+            useOutputFile(outputDirectory, generateOutputPath());
+            currentRecords = format.countRecords(currentOutputFile);
+
+            log.debug("Writing into the new financial output file {}", currentFileName);
+        }
+
+        final boolean isNewFile = !currentOutputFile.exists();
+
+        if (isNewFile) {
+            Files.createDirectories(currentOutputFile.getParentFile().toPath());
+            currentCreated = Instant.now();
+
+            if (journal != null) {
+                journal.opened(currentFileName);
+            }
+
+            if (manifest != null) {
+                manifest.opened(currentFileName, currentCreated);
+            }
+        }
+
+        currentLength = isNewFile ? 0 : currentOutputFile.length();
+
+        if (appConfig.getFinancial().isMemoryMapped()) {
+            // pre-size the file for the rest of the records
+            final AppConfig.Financial financial = appConfig.getFinancial();
+            final long expectedLength = (long) Math.max(1, financial.getMaxRecordsPerFile() - currentRecords) * financial.getMappedRecordSize()
+                    + (isNewFile ? financial.getMappedRecordSize() : 0);
+
+            outputFile = new MappedFinancialOutputFile(currentOutputFile, expectedLength);
+        } else {
+            outputFile = new StreamFinancialOutputFile(currentOutputFile);
+        }
+
+        if (isNewFile) {
+            // write header if it's a new file
+            encoder.encodeHeader();
+        }
+    }
+
+    private boolean recoverFromJournal(String outputDirectory) throws IOException {
+        final Optional<FinancialJournal.Entry> entry = journal.recover();
+
+        if (entry.isEmpty()) {
+            return false;
+        }
+
+        final File file = new File(outputDirectory, entry.get().fileName());
+
+        if (!file.exists() && FinancialFileSealer.isSealed(file.toPath())) {
+            // the last committed file has been rotated and sealed, the manifest knows whether there is another one
+            return false;
+        }
+
+        if (!entry.get().committed()) {
+            // the file has been opened, but none of its rows were committed
+            if (Files.deleteIfExists(file.toPath())) {
+                log.warn("The financial output file {} has no committed rows, it has been deleted", file.getName());
+            }
+
+            useOutputFile(outputDirectory, entry.get().fileName());
+            currentRecords = 0;
+
+            return true;
+        }
+
+        if (file.length() < entry.get().length()) {
+            log.error("The financial output file {} is shorter than committed by the journal, let's look for the recently modified file", file.getName());
+
+            return false;
+        }
+
+        if (file.length() > entry.get().length()) {
+            // the torn rows, or the rows not committed before the crash (their orders were not acknowledged)
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(entry.get().length());
+            }
+
+            log.warn("The financial output file {} has been truncated to its last committed length {}", file.getName(), entry.get().length());
+        }
+
+        useOutputFile(outputDirectory, entry.get().fileName());
+        currentCreated = creationTime(file);
+        currentRecords = entry.get().rows();
+
+        log.debug("Attempt to continue writing into the last committed financial output file {} with {} lines", currentFileName, currentRecords);
+
+        return true;
+    }
+
+    private void restoreState(String outputDirectory, String fileNamePattern) throws IOException {
+        if (this.outputDirectory != null) {
+            // the output directory or file naming has changed
+            closeOutputFile();
+        }
+
+        releaseFiles();
+
+        this.outputDirectory = null;
+
+        ensureOutputDirectoryExistsAndValidate(outputDirectory);
+
+        currentFileName = null;
+        currentOutputFile = null;
+        currentRecords = 0;
+        uncommitted = false;
+
+        if (appConfig.getFinancial().isJournal()) {
+            journal = new FinancialJournal(Paths.get(outputDirectory), shardFileName(FinancialJournal.FILE_NAME));
+        }
+
+        if (appConfig.getFinancial().isManifest()) {
+            manifest = new FinancialManifest(Paths.get(outputDirectory), shardFileName(FinancialManifest.FILE_NAME));
+        }
+
+        if (journal == null || !recoverFromJournal(outputDirectory)) {
+            final Optional<FinancialManifest.Entry> lastFile = manifest != null ? manifest.lastFile() : Optional.empty();
+
+            if (lastFile.isPresent()) {
+                // continue writing into the most recent file in the manifest, unless it is sealed
+                if (!lastFile.get().sealed() && new File(outputDirectory, lastFile.get().fileName()).exists()) {
+                    useOutputFile(outputDirectory, lastFile.get().fileName());
+                    currentCreated = lastFile.get().created();
+                }
+            } else {
+                // continue writing into the latest modified file in output directory
+                final File recentlyModifiedFile = getRecentlyModifiedFile(outputDirectory, outputFileName(fileNamePattern));
+
+                if (recentlyModifiedFile != null) {
+                    useOutputFile(outputDirectory, recentlyModifiedFile.getName());
+                    currentCreated = creationTime(recentlyModifiedFile);
+                }
+            }
+
+            if (currentOutputFile != null) {
+                try {
+                    if (MappedFinancialOutputFile.truncateUnwritten(currentOutputFile)) {
+                        log.warn("The financial output file {} was not closed, its unwritten end has been truncated", currentFileName);
+                    }
+
+                    currentRecords = format.countRecords(currentOutputFile);
+
+                    log.debug("Attempt to continue writing into recently modified financial output file {} with {} lines", currentFileName, currentRecords);
+                } catch (IOException e) {
+                    currentFileName = null;
+                    currentOutputFile = null;
+                    currentRecords = 0;
+
+                    log.error("Failed to count the number of lines in previous financial output file. Writing into the new financial output file", e);
+                }
+            }
+        }
+
+        this.outputDirectory = outputDirectory;
+        this.fileNamePattern = fileNamePattern;
+
+        // NB! once per directory, not again when the state is restored after a failure
+        if (sealer != null && !outputDirectory.equals(sealingResumedDirectory)) {
+            resumeSealing(outputDirectory, fileNamePattern);
+            sealingResumedDirectory = outputDirectory;
+        }
+    }
+
+    /**
+     * Seals the complete files left unsealed by the previous run (e.g. crashed or stopped before they were sealed).
+     * They are the files of the manifest which still exist uncompressed, or the files matching the file name pattern
+     * without the manifest.
+     */
+    private void resumeSealing(String outputDirectory, String fileNamePattern) throws IOException {
+        if (manifest != null) {
+            for (FinancialManifest.Entry entry : manifest.files()) {
+                final File file = new File(outputDirectory, entry.fileName());
+
+                if (file.exists() && !file.equals(currentOutputFile)) {
+                    // the rotated file has its records in the manifest, the file left open has to be counted
+                    sealCompleteFile(file, entry.sealed() ? entry.rows() : -1);
+                }
+            }
+
+            return;
+        }
+
+        final String shardFileNamePattern = outputFileName(fileNamePattern);
+
+        // NB! the files might be in the partitions
+        try (Stream<Path> files = Files.walk(Paths.get(outputDirectory))) {
+            files.map(Path::toFile)
+                    .filter(File::isFile)
+                    .filter(file -> matchesFileNamePattern(file, shardFileNamePattern))
+                    .filter(file -> !file.equals(currentOutputFile))
+                    .forEach(file -> sealCompleteFile(file, -1));
+        }
+    }
+
+    /**
+     * @param rows the number of the records in the file, -1 if not known
+     */
+    private void sealCompleteFile(File file, int rows) {
+        try {
+            sealer.seal(file, rows >= 0 ? rows : format.countRecords(file));
+        } catch (IOException e) {
+            // NB! the file stays as it is, it is sealed at the next start
+            log.error("Failed to count the records of the financial output file {} to seal it", file, e);
+        }
+    }
+
+    private String resolveOutputDirectory(AppConfig.Financial financial) {
+        final List<String> shardDirectories = financial.getShardDirectories();
+
+        if (shardDirectories != null && !shardDirectories.isEmpty()) {
+            // e.g. a directory per disk
+            return shardDirectories.get(shard % shardDirectories.size());
+        }
+
+        return shards > 1 ? Paths.get(financial.getOutputDirectory(), "shard-" + shard).toString() : financial.getOutputDirectory();
+    }
+
+    /**
+     * @return whether the file name is taken, by the previous file or a file already written (or sealed)
+     */
+    private boolean isUsedOutputPath(String fileName, String previousFileName) {
+        final Path file = Paths.get(outputDirectory, fileName);
+
+        return fileName.equals(previousFileName) || Files.exists(file) || FinancialFileSealer.isSealed(file);
+    }
+
+    private void rotateOutputFile() throws IOException {
+        final String previousFileName = this.currentFileName;
+        String currentFileName = generateOutputPath();
+
+        // the limit might be reached more than once within the time unit of the file name pattern
+        for (int sequence = 1; isUsedOutputPath(currentFileName, previousFileName); sequence++) {
+            currentFileName = generateOutputPath(sequence);
+        }
+
+        log.debug("Limit of the lines is reached in the file {}, let's start using a new file {}", previousFileName, currentFileName);
+
+        closeOutputFile();
+
+        if (manifest != null) {
+            manifest.sealed(previousFileName, currentCreated, currentRecords);
+
+            if (appConfig.getFinancial().getFsync() != AppConfig.FsyncPolicy.NEVER) {
+                manifest.sync();
+            }
+        }
+
+        if (sealer != null) {
+            sealer.seal(currentOutputFile, currentRecords);
+        }
+
+        useOutputFile(outputDirectory, currentFileName);
+        currentRecords = format.countRecords(currentOutputFile);
+    }
+
+    /**
+     * Appends the order into the current output file, but leaves it in the buffer. The order is written by the next
+     * {@link #flush(boolean)}.
+     */
+    @SneakyThrows
+    synchronized void appendOrder(final Order order) {
+        final AppConfig.Financial financial = appConfig.getFinancial();
+        final String shardOutputDirectory = resolveOutputDirectory(financial);
+
+        // NB! the state is restored from the disk only once, or when the output directory or file naming changes
+        if (!shardOutputDirectory.equals(outputDirectory) || !financial.getFileNamePattern().equals(fileNamePattern)) {
+            restoreState(shardOutputDirectory, financial.getFileNamePattern());
+        }
+
+        final int maxRecordsPerFile = financial.getMaxRecordsPerFile();
+
+        final List<OrderItem> orderItems = ofNullable(order.getOrderItems()).orElse(List.of());
+
+        if (orderItems.isEmpty()) {
+            return;
+        }
+
+        log.debug("Writing {} records into the financial output files", orderItems.size());
+
+        // NB! the rows of the orders appended before are still in the buffer, only this order is rolled back on failure
+        final long markedLength = currentLength;
+        final FinancialOutputFile markedOutputFile = outputFile;
+        final int markedRecords = currentRecords;
+
+        encoder.mark();
+
+        try {
+            for (OrderItem orderItem : orderItems) {
+                if (currentOutputFile != null && currentRecords >= maxRecordsPerFile) {
+                    // next records should be written into a new file
+                    rotateOutputFile();
+                }
+
+                if (outputFile == null) {
+                    openOutputFile();
+                }
+
+                encoder.encode(order, orderItem);
+                currentRecords++;
+
+                // NB! the rows of a large order are written as they are encoded, the buffer does not grow with the order
+                if (encoder.length() >= WRITE_THRESHOLD) {
+                    writeEncoded();
+                }
+            }
+
+            lastOrderId = order.getOrderId();
+
+            if (!outputFile.isBulkWrite()) {
+                writeEncoded();
+            }
+
+            pending = true;
+        } catch (Exception e) {
+            if (outputFile != null && outputFile == markedOutputFile && currentLength == markedLength) {
+                // none of the rows of the order has left the buffer
+                encoder.rollback();
+                currentRecords = markedRecords;
+            } else {
+                // the rows of the orders appended before might be lost with the state, they must not be completed
+                discarded |= pending;
+                resetState();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the appended orders into the current output file, and commits them into the journal.
+     *
+     * @param sync whether to force the file to the disk as well
+     */
+    synchronized void flush(boolean sync) throws IOException {
+        if (discarded) {
+            // NB! the orders appended since then are discarded too, the whole batch fails
+            discarded = false;
+            resetState();
+
+            throw new IOException("The orders appended since the last flush have been discarded by a failed order");
+        }
+
+        if (outputFile == null) {
+            return;
+        }
+
+        try {
+            writeEncoded();
+
+            if (sync) {
+                outputFile.sync();
+            }
+
+            commit(sync);
+        } catch (IOException e) {
+            resetState();
+
+            throw e;
+        }
+    }
+
+    private void resetState() {
+        // the state is not trustworthy anymore, let's restore it from the disk (journal) with the next order
+        releaseFiles();
+        outputDirectory = null;
+        pending = false;
+    }
+
+    synchronized void close() {
+        try {
+            closeOutputFile();
+        } catch (IOException e) {
+            log.error("Failed to close the financial output file {}", currentOutputFile, e);
+        }
+
+        releaseFiles();
+    }
+
+    /**
+     * @return the name of the output file (or the pattern) with the extension of the format, of this shard
+     */
+    private String outputFileName(String fileName) {
+        return shardFileName(FilenameUtils.removeExtension(fileName) + "." + format.extension());
+    }
+
+    private String shardFileName(String fileName) {
+        if (shards == 1) {
+            return fileName;
+        }
+
+        // NB! the shards might share the output directory, or their files be collected into one place later
+        final String extension = FilenameUtils.getExtension(fileName);
+
+        return FilenameUtils.removeExtension(fileName) + "_" + shard + (extension.isEmpty() ? "" : "." + extension);
+    }
+
+    private void useOutputFile(String outputDirectory, String fileName) {
+        currentFileName = fileName;
+        currentOutputFile = new File(outputDirectory, fileName);
+    }
+
+    private void writeEncoded() throws IOException {
+        final int written = encoder.writeTo(outputFile);
+
+        if (written > 0) {
+            currentLength += written;
+            uncommitted = true;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.ecommerceorderprocessor.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * The append-only journal of the financial output files. Each record is a self-contained line: either the file has
+ * been opened, or its rows have been committed up to the given length, together with the checksum of the line.
+ * Only the last valid record matters for recovery, so it is enough to read the tail of the journal.
+ * <pre>
+ * O    fin_orders_01012025000000.csv    0       0    -          3f2a9c01
+ * C    fin_orders_01012025000000.csv    4810    50   ORD-1234   0c4a7e12
+ * </pre>
+ * The files are relative to the output directory.
+ */
+@Slf4j
+class FinancialJournal implements Closeable {
+
+    static final String FILE_NAME = "financial.journal";
+
+    // the journal is compacted to its last record once it grows over this length
+    private static final long COMPACT_LENGTH = 1024 * 1024;
+
+    private final ChecksummedLog records;
+
+    FinancialJournal(Path directory) throws IOException {
+        this(directory, FILE_NAME);
+    }
+
+    FinancialJournal(Path directory, String fileName) throws IOException {
+        records = new ChecksummedLog(directory.resolve(fileName));
+    }
+
+    private static Optional<Entry> parse(String[] fields) {
+        try {
+            return Optional.of(new Entry(fields[0].equals("C"), fields[1], Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+
+    /**
+     * Records that the rows of the file have been written up to its given length.
+     */
+    void committed(String fileName, long length, int rows, String lastOrderId) throws IOException {
+        records.append("C", fileName, String.valueOf(length), String.valueOf(rows), lastOrderId != null ? lastOrderId : "-");
+    }
+
+    /**
+     * Records that the new file has been opened, none of its rows are committed yet.
+     */
+    void opened(String fileName) throws IOException {
+        if (records.size() > COMPACT_LENGTH) {
+            // the previous records are not needed anymore, the new file is the current one from now on
+            records.compact("O", fileName, "0", "0", "-");
+
+            log.debug("The financial journal has been compacted");
+        } else {
+            records.append("O", fileName, "0", "0", "-");
+        }
+    }
+
+    /**
+     * Reads the last valid record from the tail of the journal.
+     */
+    Optional<Entry> recover() throws IOException {
+        return records.lastRecord(fields -> fields.length == 5 && (fields[0].equals("O") || fields[0].equals("C")))
+                .flatMap(FinancialJournal::parse);
+    }
+
+    void sync() throws IOException {
+        records.sync();
+    }
+
+    /**
+     * @param committed whether the rows of the file are committed up to its length, or the file has just been opened
+     */
+    record Entry(boolean committed, String fileName, long length, int rows) {
+    }
+}
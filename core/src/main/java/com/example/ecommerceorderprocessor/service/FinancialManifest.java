@@ -0,0 +1,84 @@
+package com.example.ecommerceorderprocessor.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The index of the financial output files, maintained in the output directory instead of listing it. A record is
+ * appended when the file is opened, and when it is sealed (the file is complete and will not be written anymore).
+ * The last record of the file is the valid one:
+ * <pre>
+ * 2025/01/01/fin_orders_01012025000000.csv    2025-01-01T00:00:00Z    0       open      5b1e2f0a
+ * 2025/01/01/fin_orders_01012025000000.csv    2025-01-01T00:00:00Z    1000    sealed    9d03c6a4
+ * </pre>
+ * The files are relative to the output directory, the last field is the checksum of the line.
+ */
+class FinancialManifest implements Closeable {
+
+    static final String FILE_NAME = "financial.manifest";
+
+    private final ChecksummedLog records;
+
+    FinancialManifest(Path directory) throws IOException {
+        this(directory, FILE_NAME);
+    }
+
+    FinancialManifest(Path directory, String fileName) throws IOException {
+        records = new ChecksummedLog(directory.resolve(fileName));
+    }
+
+    private static Optional<Entry> parse(String[] fields) {
+        try {
+            return Optional.of(new Entry(fields[0], Instant.parse(fields[1]), Integer.parseInt(fields[2]), fields[3].equals("sealed")));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+
+    /**
+     * Reads the whole manifest, the last valid record of every output file, in the order the files were opened.
+     */
+    Collection<Entry> files() throws IOException {
+        final Map<String, Entry> files = new LinkedHashMap<>();
+
+        for (String[] fields : records.records(fields -> fields.length == 4)) {
+            parse(fields).ifPresent(entry -> files.put(entry.fileName(), entry));
+        }
+
+        return files.values();
+    }
+
+    /**
+     * Reads the last valid record from the tail of the manifest, that is the most recent output file.
+     */
+    Optional<Entry> lastFile() throws IOException {
+        return records.lastRecord(fields -> fields.length == 4).flatMap(FinancialManifest::parse);
+    }
+
+    void opened(String fileName, Instant created) throws IOException {
+        records.append(fileName, created.toString(), "0", "open");
+    }
+
+    void sealed(String fileName, Instant created, int rows) throws IOException {
+        records.append(fileName, created.toString(), String.valueOf(rows), "sealed");
+    }
+
+    void sync() throws IOException {
+        records.sync();
+    }
+
+    record Entry(String fileName, Instant created, int rows, boolean sealed) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.ecommerceorderprocessor.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The financial output file open for appending the encoded rows.
+ */
+interface FinancialOutputFile extends Closeable {
+
+    /**
+     * Whether the written bytes are buffered by the file, so it is better to write them in bulk.
+     */
+    boolean isBulkWrite();
+
+    /**
+     * Forces the written bytes to the disk.
+     */
+    void sync() throws IOException;
+
+    void write(byte[] bytes, int offset, int length) throws IOException;
+}
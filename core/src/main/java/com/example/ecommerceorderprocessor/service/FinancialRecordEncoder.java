@@ -0,0 +1,51 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+
+import java.io.IOException;
+
+/**
+ * Encodes the financial records of the order items into a reusable buffer of the {@link FinancialExportFormat}, until
+ * they are written into the output file.
+ */
+interface FinancialRecordEncoder {
+
+    /**
+     * Appends what starts a new file, e.g. the header row.
+     */
+    void encodeHeader();
+
+    /**
+     * Appends the record of the order item.
+     */
+    void encode(Order order, OrderItem orderItem);
+
+    /**
+     * @return the number of the encoded bytes, not written yet
+     */
+    int length();
+
+    /**
+     * Marks the end of the encoded records, the records encoded after it can be discarded by {@link #rollback()}.
+     */
+    void mark();
+
+    /**
+     * Discards the encoded records, the buffer is reused.
+     */
+    void reset();
+
+    /**
+     * Discards the records encoded since the last {@link #mark()}. It must not be called once the buffer has been
+     * written or reset since the mark.
+     */
+    void rollback();
+
+    /**
+     * Writes the encoded records into the file, and resets the buffer.
+     *
+     * @return the number of bytes written
+     */
+    int writeTo(FinancialOutputFile file) throws IOException;
+}
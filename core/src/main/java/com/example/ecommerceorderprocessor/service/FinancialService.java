@@ -2,38 +2,20 @@ package com.example.ecommerceorderprocessor.service;
 
 import com.example.ecommerceorderprocessor.config.AppConfig;
 import com.example.ecommerceorderprocessor.model.Order;
-import com.example.ecommerceorderprocessor.model.financial.FinancialOrderRecord;
-import com.opencsv.CSVWriter;
-import com.opencsv.bean.ColumnPositionMappingStrategy;
-import com.opencsv.bean.StatefulBeanToCsv;
-import com.opencsv.bean.StatefulBeanToCsvBuilder;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
-import jakarta.validation.constraints.NotEmpty;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.ListUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.text.MessageFormat;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
-
-import static java.util.Optional.ofNullable;
+import java.util.Objects;
 
+/**
+ * Writes the orders into the financial output files. The orders are spread over {@code app.financial.shards} writers by
+ * their order id, each with its own sequence of files (and optionally its own directory), so the updates of one order
+ * always end up in the same sequence.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -41,206 +23,81 @@ public class FinancialService {
 
     private final AppConfig appConfig;
 
-    private static int countLines(File file) throws IOException {
-        if (file.exists()) {
-            try (Stream<String> lines = Files.lines(Paths.get(file.getAbsolutePath()))) {
-                return (int) lines.count() - 1;
-            }
-        } else {
-            return 0;
-        }
-    }
+    // created with the first order, guarded by this
+    private FinancialFileSealer sealer;
+    private FinancialFileWriter[] writers;
 
-    private static Collection<FinancialOrderRecord> fromOrder(Order order) {
-        return ofNullable(order.getOrderItems()).orElse(List.of()).stream()
-                .map(orderItem -> FinancialOrderRecord.builder()
-                        .currencyCode(order.getCurrencyCode())
-                        .orderId(order.getOrderId())
-                        .orderPaidAmount(order.getOrderPaid())
-                        .orderTotal(order.getOrderTotal())
-                        .productId(orderItem.getProductId())
-                        .productName(orderItem.getProductName())
-                        .productPrice(orderItem.getPrice())
-                        .quantity(orderItem.getQuantity())
-                        .build()
-                )
-                .collect(Collectors.toList());
+    /**
+     * Appends the order into the current output file of the shard, but leaves it in the buffer. The order is written by
+     * the next {@link #flush(int, boolean)} of the shard.
+     */
+    public void appendOrder(int shard, final Order order) {
+        getWriters()[shard].appendOrder(order);
     }
 
-    private static File getRecentlyModifiedFile(@NotEmpty String outputDirectory, @NotEmpty String fileNamePattern) {
-        final File[] files = new File(outputDirectory).listFiles();
-
-        return Arrays.stream(files != null ? files : new File[0])
-                .filter(File::isFile)
-                .filter(file -> {
-                    final String extension = StringUtils.substringAfterLast(fileNamePattern, ".");
-
-                    return StringUtils.equalsIgnoreCase(FilenameUtils.getExtension(file.getName()), extension);
-                })
-                .filter(file -> {
-                    final String outputFileNamePrefix = StringUtils.substringBefore(fileNamePattern, "{");
-
-                    return StringUtils.startsWithIgnoreCase(file.getName(), outputFileNamePrefix);
-                })
-                .max(Comparator.comparingLong(File::lastModified))
-                .orElse(null);
+    /**
+     * Writes the buffered orders of the shard into its current output file and commits them into the journal.
+     *
+     * @param sync whether to force the output file and the journal to the disk
+     */
+    public void flush(int shard, boolean sync) throws IOException {
+        getWriters()[shard].flush(sync);
     }
 
-    private static void writeChuckToFile(List<FinancialOrderRecord> chunk, File currentOutputFile) throws IOException, CsvDataTypeMismatchException, CsvRequiredFieldEmptyException {
-        final List<FinancialOrderRecord> records = chunk.stream().filter(Objects::nonNull).collect(Collectors.toList());
-
-        log.debug("Writing {} records into the financial output file {}", records.size(), currentOutputFile);
-
-        final String[] columns = {"order_id", "product_name", "product_id", "quantity", "product_price", "order_total", "order_paid_amount", "currency_code"};
-
-        final boolean isNewFile = !currentOutputFile.exists();
-
-        if (isNewFile) {
-            // write header if it's a new file
-            try (FileWriter fileWriter = new FileWriter(currentOutputFile)) {
-                final CSVWriter csvWriter = new CSVWriter(fileWriter, CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END);
-                csvWriter.writeNext(columns);
-                csvWriter.close();
-            }
-        }
-
-        final ColumnPositionMappingStrategy<FinancialOrderRecord> mappingStrategy = new ColumnPositionMappingStrategy<>();
-        mappingStrategy.setType(FinancialOrderRecord.class);
-        mappingStrategy.setColumnMapping(columns);
-
-        // reopen the writer for appending the data
-        try (FileWriter dataWriter = new FileWriter(currentOutputFile, true)) {
-            final StatefulBeanToCsv<FinancialOrderRecord> beanWriter = new StatefulBeanToCsvBuilder<FinancialOrderRecord>(dataWriter)
-                    .withQuotechar(CSVWriter.NO_QUOTE_CHARACTER)
-                    .withMappingStrategy(mappingStrategy)
-                    .build();
-
-            beanWriter.write(records);
-
-            dataWriter.flush();
-        }
+    public int getShards() {
+        return getWriters().length;
     }
 
-    private void ensureOutputDirectoryExistsAndValidate() {
-        final Path directory = Paths.get(appConfig.getFinancial().getOutputDirectory());
+    private synchronized FinancialFileWriter[] getWriters() {
+        if (writers == null) {
+            final int shards = appConfig.getFinancial().getShards();
 
-        if (!Files.exists(directory)) {
-            try {
-                Files.createDirectories(directory);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to create output directory: " + appConfig.getFinancial().getOutputDirectory(), e);
+            if (appConfig.getFinancial().isSeal()) {
+                sealer = new FinancialFileSealer(appConfig.getFinancial());
             }
-        }
 
-        // validate the path is a directory
-        if (!Files.isDirectory(directory)) {
-            throw new RuntimeException("Output directory is not a valid directory: " + appConfig.getFinancial().getOutputDirectory());
-        }
+            final FinancialExportFormat format = FinancialExportFormat.of(appConfig.getFinancial().getFormat());
 
-        // validate the directory is writable
-        if (!Files.isWritable(directory)) {
-            throw new RuntimeException("Output directory is not writable: " + appConfig.getFinancial().getOutputDirectory());
-        }
-    }
+            writers = new FinancialFileWriter[shards];
 
-    private String generateOutputFileName() {
-        String fileNamePattern = appConfig.getFinancial().getFileNamePattern();
-
-        if (fileNamePattern.contains("{datetime:")) {
-            final String datetimePattern = StringUtils.substringBetween(fileNamePattern, "{datetime:", "}");
-            final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern(datetimePattern));
+            for (int shard = 0; shard < shards; shard++) {
+                writers[shard] = new FinancialFileWriter(appConfig, format, sealer, shard, shards);
+            }
 
-            fileNamePattern = StringUtils.replace(fileNamePattern, "{datetime:" + datetimePattern + "}", timestamp);
+            log.debug("Writing the financial output files by {} shard(s)", shards);
         }
 
-        return fileNamePattern;
+        return writers;
     }
 
-    private String getCurrentFileName() {
-        // find latest modified file in output directory
-        final File recentlyModifiedFile = getRecentlyModifiedFile(appConfig.getFinancial().getOutputDirectory(), appConfig.getFinancial().getFileNamePattern());
-
-        String currentFileName;
-
-        if (recentlyModifiedFile != null) {
-            currentFileName = recentlyModifiedFile.getName();
-
-            log.debug("Attempt to continue writing into recently modified financial output file {}", currentFileName);
-        } else {
-            currentFileName = generateOutputFileName();
-
-            log.debug("Writing into the new financial output file {}", currentFileName);
-        }
-
-        return currentFileName;
+    /**
+     * @return the shard which writes the order
+     */
+    public int shardOf(final Order order) {
+        return Math.floorMod(Objects.hashCode(order.getOrderId()), getShards());
     }
 
-    private File resolveOutputFile() {
-        String currentFileName = getCurrentFileName();
-
-        int lines = 0;
-
-        try {
-            final File f = new File(appConfig.getFinancial().getOutputDirectory(), currentFileName);
-
-            if (f.exists()) {
-                lines = countLines(f);
-
-                log.debug("The financial output file {} has {} lines", currentFileName, lines);
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (writers != null) {
+            for (FinancialFileWriter writer : writers) {
+                writer.close();
             }
-        } catch (IOException e) {
-            currentFileName = generateOutputFileName();
-
-            log.error("Failed to count the number of lines in previous financial output file. Writing into the new financial output file {}", currentFileName, e);
         }
 
-        if (lines >= appConfig.getFinancial().getMaxRecordsPerFile()) {
-            final String previousFileName = currentFileName;
-
-            currentFileName = generateOutputFileName();
-
-            if (previousFileName.equals(currentFileName)) {
-                final String msg = MessageFormat.format("Cannot continue to write orders into the financial files," +
-                        " because the limit of the records in the file {0} is reached its limit of {1} records and the " +
-                        "rules for file naming are not allowing us to generate a unique file name. You might want to" +
-                        "repeat the operation a bit later.", previousFileName, appConfig.getFinancial().getMaxRecordsPerFile());
-
-                log.error(msg);
-
-                throw new IllegalStateException(msg);
-            } else {
-                log.debug("Limit of the lines is reached in the file {}, let's start using a new file {}", previousFileName, currentFileName);
-            }
+        if (sealer != null) {
+            sealer.shutdown();
         }
-
-        return new File(appConfig.getFinancial().getOutputDirectory(), currentFileName);
     }
 
     @SneakyThrows
     public void writeOrderToFile(final Order order) {
-        ensureOutputDirectoryExistsAndValidate();
-
-        // resolve current output file and verify its size
-        File currentOutputFile = resolveOutputFile();
+        final int shard = shardOf(order);
+        final FinancialFileWriter writer = getWriters()[shard];
 
-        // generate records for CSV from orders
-        final List<FinancialOrderRecord> orderRecords = new ArrayList<>();
-        // NB! reserve space for same amount of records as in existing output file
-        orderRecords.addAll(IntStream.range(0, countLines(currentOutputFile)).mapToObj(i -> (FinancialOrderRecord) null).toList());
-        orderRecords.addAll(fromOrder(order));
-
-        // split all records into chunks by appConfig.getFinancial().getMaxRecordsPerFile()
-        final List<List<FinancialOrderRecord>> chunks = ListUtils.partition(orderRecords, appConfig.getFinancial().getMaxRecordsPerFile());
-
-        for (Iterator<List<FinancialOrderRecord>> iterator = chunks.iterator(); iterator.hasNext(); ) {
-            final List<FinancialOrderRecord> chunk = iterator.next();
-
-            writeChuckToFile(chunk, currentOutputFile);
-
-            if (iterator.hasNext()) {
-                // next chunk should be writen into a new file (but we want to make sure, that new file does not overlap with existing file)
-                currentOutputFile = resolveOutputFile();
-            }
+        synchronized (writer) {
+            writer.appendOrder(order);
+            writer.flush(false);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package com.example.ecommerceorderprocessor.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the rows into the file through the memory mapping, without any write system calls. The file is pre-sized
+ * for the expected rows when opened (the mapping is extended if they do not fit) and truncated to the length of the
+ * written rows when closed.
+ * <p>
+ * NB! If the application crashes before the file is closed, the file is left with the zero bytes at its end, they
+ * are removed by {@link #truncateUnwritten(File)} before the file is written again.
+ */
+@Slf4j
+class MappedFinancialOutputFile implements FinancialOutputFile {
+
+    private final FileChannel channel;
+    // the position in the file of the current mapping
+    private long mappingPosition;
+    private MappedByteBuffer mapping;
+    // the length of the mapping forced to the disk, from its start
+    private int synced;
+
+    MappedFinancialOutputFile(File file, long expectedLength) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(channel.size(), expectedLength);
+    }
+
+    /**
+     * Removes the zero bytes left at the end of the file by the mapping, if the file was not closed.
+     *
+     * @return whether the file has been truncated
+     */
+    static boolean truncateUnwritten(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            final long fileLength = randomAccessFile.length();
+            final byte[] block = new byte[8192];
+            long length = fileLength;
+
+            // NB! the rows always end with the line feed, so the last written byte is never zero
+            while (length > 0) {
+                final int blockLength = (int) Math.min(block.length, length);
+                randomAccessFile.seek(length - blockLength);
+                randomAccessFile.readFully(block, 0, blockLength);
+
+                int i = blockLength;
+                while (i > 0 && block[i - 1] == 0) {
+                    i--;
+                }
+
+                length -= blockLength - i;
+
+                if (i > 0) {
+                    break;
+                }
+            }
+
+            if (length < fileLength) {
+                randomAccessFile.setLength(length);
+
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.truncate(mappingPosition + mapping.position());
+        } finally {
+            mapping = null;
+            channel.close();
+        }
+    }
+
+    @Override
+    public boolean isBulkWrite() {
+        return false;
+    }
+
+    private void map(long position, long length) throws IOException {
+        // NB! the previous mapping is not reachable by sync() anymore
+        if (mapping != null) {
+            sync();
+        }
+
+        mappingPosition = position;
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        synced = 0;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (synced < mapping.position()) {
+            mapping.force(synced, mapping.position() - synced);
+            synced = mapping.position();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (mapping.remaining() < length) {
+            // the rows are longer than expected, let's extend the file by the same length again
+            final long position = mappingPosition + mapping.position();
+
+            log.debug("The financial output file is extended by {} bytes", Math.max(length, mapping.capacity()));
+
+            map(position, Math.max(length, mapping.capacity()));
+        }
+
+        mapping.put(bytes, offset, length);
+    }
+}
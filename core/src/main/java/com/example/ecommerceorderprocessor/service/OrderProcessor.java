@@ -7,35 +7,53 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderProcessor {
-    private final CrmService crmService;
-    private final FinancialService financialService;
+    private final AsyncCrmSender crmSender;
+    private final AsyncFinancialWriter financialWriter;
 
+    /**
+     * Processes the order asynchronously: the order is sent to CRM and Financial systems in parallel, each on its own
+     * lane, so the calling thread is free to take the next order while they are in progress. The failure of one
+     * system does not stop the other.
+     *
+     * @return the future completed once the order has reached both CRM and Financial systems, or exceptionally if
+     * any of them has failed
+     */
     @ServiceActivator
-    public void process(final Order order) {
+    public CompletableFuture<Void> process(final Order order) {
         log.debug("Starting to process order {} with status {}", order.getOrderId(), order.getStatus());
 
-        try {
-            // send to CRM System (all order statuses)
-            log.debug("Sending order {} to CRM", order.getOrderId());
-            crmService.sendOrderUpdate(order);
-            log.debug("Successfully sent order {} to CRM", order.getOrderId());
-
-            // send to Financial System (only PAID or CANCELLED orders)
-            if (order.getStatus() == OrderStatusEnum.PAID || order.getStatus() == OrderStatusEnum.CANCELLED) {
-                log.debug("Sending order {} to Financial system", order.getOrderId());
-                financialService.writeOrderToFile(order);
-                log.debug("Successfully sent order {} to Financial system", order.getOrderId());
-            }
-        } catch (Exception e) {
-            log.error("Error processing order {}: {}", order.getOrderId(), e.getMessage(), e);
-
-            throw e;
+        // send to CRM System (all order statuses)
+        log.debug("Sending order {} to CRM", order.getOrderId());
+        final CompletableFuture<Void> crm = crmSender.sendOrderUpdate(order)
+                .whenComplete((result, e) -> {
+                    if (e == null) {
+                        log.debug("Successfully sent order {} to CRM", order.getOrderId());
+                    } else {
+                        log.error("Error sending order {} to CRM: {}", order.getOrderId(), e.getMessage(), e);
+                    }
+                });
+
+        // send to Financial System (only PAID or CANCELLED orders)
+        if (order.getStatus() != OrderStatusEnum.PAID && order.getStatus() != OrderStatusEnum.CANCELLED) {
+            return crm;
         }
 
-        // no return value - the processing is complete
+        log.debug("Sending order {} to Financial system", order.getOrderId());
+        final CompletableFuture<Void> financial = financialWriter.writeOrderToFile(order)
+                .whenComplete((result, e) -> {
+                    if (e == null) {
+                        log.debug("Successfully sent order {} to Financial system", order.getOrderId());
+                    } else {
+                        log.error("Error sending order {} to Financial system: {}", order.getOrderId(), e.getMessage(), e);
+                    }
+                });
+
+        return CompletableFuture.allOf(crm, financial);
     }
-}
\ No newline at end of file
+}
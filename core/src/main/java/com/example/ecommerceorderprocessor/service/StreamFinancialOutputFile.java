@@ -0,0 +1,37 @@
+package com.example.ecommerceorderprocessor.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Appends the rows with plain writes into the file.
+ */
+class StreamFinancialOutputFile implements FinancialOutputFile {
+
+    private final FileOutputStream outputStream;
+
+    StreamFinancialOutputFile(File file) throws IOException {
+        outputStream = new FileOutputStream(file, true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    @Override
+    public boolean isBulkWrite() {
+        return true;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        outputStream.getFD().sync();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        outputStream.write(bytes, offset, length);
+    }
+}
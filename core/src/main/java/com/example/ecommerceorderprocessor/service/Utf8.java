@@ -0,0 +1,87 @@
+package com.example.ecommerceorderprocessor.service;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Encodes the values into UTF-8 straight in the buffers of the encoders, without creating any byte arrays. The
+ * malformed surrogates are replaced by {@code ?} the same way as by the UTF-8 encoder of the JDK.
+ */
+final class Utf8 {
+
+    private static final IntPredicate NOTHING_ESCAPED = c -> false;
+
+    private Utf8() {
+    }
+
+    /**
+     * Encodes the value into the buffer, which must have room for its {@link #length(CharSequence)} bytes.
+     *
+     * @return the position after the value
+     */
+    static int encode(CharSequence value, byte[] buffer, int position) {
+        return encode(value, buffer, position, NOTHING_ESCAPED, (byte) 0);
+    }
+
+    /**
+     * Encodes the value into the buffer, prepending the escape byte to the (ASCII) chars to escape. The buffer must
+     * have room for 4 bytes per char of the value.
+     *
+     * @return the position after the value
+     */
+    static int encode(CharSequence value, byte[] buffer, int position, IntPredicate escaped, byte escape) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (escaped.test(c)) {
+                buffer[position++] = escape;
+            }
+
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * @return the number of bytes of the encoded value
+     */
+    static int length(CharSequence value) {
+        int length = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+}
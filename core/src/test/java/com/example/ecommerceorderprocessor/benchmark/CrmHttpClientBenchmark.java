@@ -0,0 +1,85 @@
+package com.example.ecommerceorderprocessor.benchmark;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.config.RestTemplateConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution (see p0.99 in the output) of the CRM update with each of the HTTP clients
+ * against a local stub of the CRM API:
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main CrmHttpClientBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CrmHttpClientBenchmark {
+
+    private static final String BODY = "{\"orderId\":\"ORD-123\",\"status\":\"PAID\",\"totalAmount\":100.0}";
+
+    @Param({"simple", "apache", "jdk"})
+    private String httpClient;
+
+    private HttpEntity<String> request;
+    private RestTemplate restTemplate;
+    private HttpServer server;
+    private String url;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CrmHttpClientBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 128);
+        server.createContext("/orders", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        final AppConfig appConfig = new AppConfig();
+        appConfig.getCrm().setApiUrl("http://localhost:" + server.getAddress().getPort());
+        appConfig.getCrm().setHttpClient(AppConfig.HttpClient.valueOf(httpClient.toUpperCase()));
+
+        restTemplate = new RestTemplateConfig().restTemplate(appConfig);
+        url = appConfig.getCrm().getApiUrl() + "/orders/ORD-123";
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        request = new HttpEntity<>(BODY, headers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public void sendOrderUpdate() {
+        restTemplate.exchange(url, HttpMethod.PUT, request, Void.class);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.ecommerceorderprocessor.benchmark;
+
+import com.example.ecommerceorderprocessor.model.Money;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.FinancialCsvEncoder;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import com.opencsv.CSVWriter;
+import com.opencsv.bean.ColumnPositionMappingStrategy;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous opencsv bean mapping of the financial records with the {@link FinancialCsvEncoder}, both
+ * encoding the rows of one order. Run it with the GC profiler to see the allocation per order:
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main CsvEncoderBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvEncoderBenchmark {
+
+    private FinancialCsvEncoder encoder;
+    private Order order;
+
+    @Param({"1", "20"})
+    private int items;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CsvEncoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()
+        ).run();
+    }
+
+    @Setup
+    public void setUp() {
+        encoder = new FinancialCsvEncoder(64 * 1024);
+        order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        order.setOrderItems(Collections.nCopies(items, TestDataFactory.createSampleOrderItem()));
+    }
+
+    @Benchmark
+    public int encoder() {
+        encoder.reset();
+
+        for (OrderItem orderItem : order.getOrderItems()) {
+            encoder.encode(order, orderItem);
+        }
+
+        return encoder.length();
+    }
+
+    @Benchmark
+    public void opencsv(Blackhole blackhole) throws Exception {
+        // the records and the bean writer as they were created per order (the amounts were floats formatted the same way)
+        final List<FinancialOrderRecord> records = order.getOrderItems().stream()
+                .map(orderItem -> FinancialOrderRecord.builder()
+                        .currencyCode(order.getCurrencyCode())
+                        .orderId(order.getOrderId())
+                        .orderPaidAmount(Money.toString(order.getOrderPaid()))
+                        .orderTotal(Money.toString(order.getOrderTotal()))
+                        .productId(orderItem.getProductId())
+                        .productName(orderItem.getProductName())
+                        .productPrice(Money.toString(orderItem.getPrice()))
+                        .quantity(orderItem.getQuantity())
+                        .build())
+                .toList();
+
+        final ColumnPositionMappingStrategy<FinancialOrderRecord> mappingStrategy = new ColumnPositionMappingStrategy<>();
+        mappingStrategy.setType(FinancialOrderRecord.class);
+        mappingStrategy.setColumnMapping(FinancialCsvEncoder.COLUMNS);
+
+        final StatefulBeanToCsv<FinancialOrderRecord> beanWriter = new StatefulBeanToCsvBuilder<FinancialOrderRecord>(new BlackholeWriter(blackhole))
+                .withQuotechar(CSVWriter.NO_QUOTE_CHARACTER)
+                .withMappingStrategy(mappingStrategy)
+                .build();
+
+        beanWriter.write(records);
+    }
+
+    private static class BlackholeWriter extends Writer {
+
+        private final Blackhole blackhole;
+
+        BlackholeWriter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            blackhole.consume(buffer);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            blackhole.consume(string);
+        }
+    }
+}
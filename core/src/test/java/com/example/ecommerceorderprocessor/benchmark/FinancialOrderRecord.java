@@ -1,4 +1,4 @@
-package com.example.ecommerceorderprocessor.model.financial;
+package com.example.ecommerceorderprocessor.benchmark;
 
 import com.opencsv.bean.CsvBindByName;
 import com.opencsv.bean.CsvBindByPosition;
@@ -16,10 +16,10 @@ public class FinancialOrderRecord {
     private String orderId;
     @CsvBindByPosition(position = 6)
     @CsvBindByName(column = "order_paid_amount")
-    private float orderPaidAmount;
+    private String orderPaidAmount;
     @CsvBindByPosition(position = 5)
     @CsvBindByName(column = "order_total")
-    private float orderTotal;
+    private String orderTotal;
     @CsvBindByPosition(position = 2)
     @CsvBindByName(column = "product_id")
     private String productId;
@@ -28,7 +28,7 @@ public class FinancialOrderRecord {
     private String productName;
     @CsvBindByPosition(position = 4)
     @CsvBindByName(column = "product_price")
-    private float productPrice;
+    private String productPrice;
     @CsvBindByPosition(position = 3)
     @CsvBindByName(column = "quantity")
     private int quantity;
@@ -0,0 +1,72 @@
+package com.example.ecommerceorderprocessor.benchmark;
+
+import com.example.ecommerceorderprocessor.config.JacksonConfiguration;
+import com.example.ecommerceorderprocessor.integration.OrderMessageConverter;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous two-pass conversion of the AMQP message (JSON into map, then map into order) with the
+ * single-pass {@link OrderMessageConverter}. Run it with the GC profiler to see the allocation per message:
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main OrderMessageConverterBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderMessageConverterBenchmark {
+
+    private Jackson2JsonMessageConverter jsonMessageConverter;
+    private Message message;
+    private ObjectMapper objectMapper;
+    private OrderMessageConverter orderMessageConverter;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderMessageConverterBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()
+        ).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new JacksonConfiguration().objectMapper();
+        jsonMessageConverter = new Jackson2JsonMessageConverter();
+        orderMessageConverter = new OrderMessageConverter(objectMapper);
+
+        final Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        order.setOrderItems(Collections.nCopies(5, TestDataFactory.createSampleOrderItem()));
+
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+
+        message = new Message(objectMapper.writeValueAsBytes(order), messageProperties);
+    }
+
+    @Benchmark
+    public Object singlePass() {
+        return orderMessageConverter.fromMessage(message);
+    }
+
+    @Benchmark
+    public Object twoPass() {
+        return objectMapper.convertValue(jsonMessageConverter.fromMessage(message), Order.class);
+    }
+}
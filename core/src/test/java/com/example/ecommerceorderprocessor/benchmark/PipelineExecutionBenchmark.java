@@ -0,0 +1,116 @@
+package com.example.ecommerceorderprocessor.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.channel.AbstractExecutorChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.channel.PartitionedChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fixed thread pool of the previous pipeline with the keyed lanes on platform and virtual threads.
+ * Every order is blocked for {@code crmLatencyMillis} to simulate the blocking CRM call, the score is the time
+ * needed to process one burst of {@code orders} orders.
+ * <p>
+ * All the executions run with the same {@code concurrency} (pool threads or lanes), so the score shows the cost of the
+ * execution itself: the ordering per key of the lanes and the weight of the platform threads compared to the virtual
+ * ones, not merely more threads blocked in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PipelineExecutionBenchmark {
+
+    @Param({"10", "200", "2000"})
+    public int concurrency;
+    @Param({"20"})
+    public int crmLatencyMillis;
+    @Param({"fixedPool", "platformLanes", "virtualLanes"})
+    public String execution;
+    @Param({"2000"})
+    public int orders;
+
+    private AbstractExecutorChannel channel;
+    private ExecutorService fixedPool;
+    private volatile CountDownLatch latch;
+    private Message<?>[] messages;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PipelineExecutionBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+
+    @Benchmark
+    public void processBurst() throws InterruptedException {
+        latch = new CountDownLatch(orders);
+
+        for (Message<?> message : messages) {
+            channel.send(message);
+        }
+
+        latch.await();
+    }
+
+    @Setup
+    public void setUp() {
+        channel = switch (execution) {
+            case "fixedPool" -> {
+                fixedPool = Executors.newFixedThreadPool(concurrency);
+
+                yield new ExecutorChannel(fixedPool);
+            }
+            case "platformLanes" -> new PartitionedChannel(concurrency, Message::getPayload);
+            case "virtualLanes" -> {
+                final PartitionedChannel partitionedChannel = new PartitionedChannel(concurrency, Message::getPayload);
+                partitionedChannel.setThreadFactory(Thread.ofVirtual().name("order-lane-", 0).factory());
+
+                yield partitionedChannel;
+            }
+            default -> throw new IllegalArgumentException(execution);
+        };
+
+        channel.setBeanName(execution);
+        channel.setBeanFactory(new DefaultListableBeanFactory());
+        channel.afterPropertiesSet();
+        channel.subscribe(message -> {
+            try {
+                Thread.sleep(crmLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            latch.countDown();
+        });
+
+        messages = new Message<?>[orders];
+
+        for (int i = 0; i < orders; i++) {
+            messages[i] = MessageBuilder.withPayload("ORD-" + i).build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (channel instanceof PartitionedChannel partitionedChannel) {
+            partitionedChannel.destroy();
+        }
+
+        if (fixedPool != null) {
+            fixedPool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.integration.amqp.support.ManualAckListenerExecutionFailedException;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryAcknowledgerTest {
+
+    @Mock
+    private Channel channel;
+
+    private Message<String> delivery(long deliveryTag) {
+        return MessageBuilder.withPayload("order")
+                .setHeader(AmqpHeaders.CHANNEL, channel)
+                .setHeader(AmqpHeaders.DELIVERY_TAG, deliveryTag)
+                .build();
+    }
+
+    @Test
+    void shouldAcknowledgeCumulativelyOnlyWithoutGaps() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(3);
+
+        // Act
+        acknowledger.orderCompleted(delivery(2), true);
+        acknowledger.orderCompleted(delivery(3), true);
+        acknowledger.orderCompleted(delivery(4), true);
+
+        // Assert - the first delivery is still in progress
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+        // Act
+        acknowledger.orderCompleted(delivery(1), true);
+
+        // Assert
+        verify(channel).basicAck(4, true);
+    }
+
+    @Test
+    void shouldAcknowledgeRestOfDeliveriesOnFlush() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(10);
+        when(channel.isOpen()).thenReturn(true);
+
+        // Act
+        acknowledger.orderCompleted(delivery(1), true);
+        acknowledger.orderCompleted(delivery(2), true);
+        acknowledger.flush();
+        acknowledger.flush();
+
+        // Assert
+        verify(channel, times(1)).basicAck(2, true);
+    }
+
+    @Test
+    void shouldIgnoreMessagesWithoutChannel() {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(1);
+
+        // Act
+        acknowledger.orderCompleted(MessageBuilder.withPayload("order").setHeader(AmqpHeaders.DELIVERY_TAG, 1L).build(), true);
+
+        // Assert
+        verifyNoInteractions(channel);
+    }
+
+    @Test
+    void shouldKeepTrackOfDeliveriesBeyondInitialWindow() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(1);
+
+        // Act
+        for (long deliveryTag = 1000; deliveryTag >= 2; deliveryTag--) {
+            acknowledger.orderCompleted(delivery(deliveryTag), true);
+        }
+
+        acknowledger.orderCompleted(delivery(1), true);
+
+        // Assert
+        verify(channel).basicAck(1000, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void shouldRequeueFailedDeliveryAndNotAcknowledgeIt() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(2);
+
+        // Act
+        acknowledger.orderCompleted(delivery(1), true);
+        acknowledger.orderCompleted(delivery(3), false);
+        acknowledger.orderCompleted(delivery(2), true);
+
+        // Assert - the acknowledgement must not point to the requeued delivery
+        InOrder inOrder = inOrder(channel);
+        inOrder.verify(channel).basicNack(3, false, true);
+        inOrder.verify(channel).basicAck(2, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void shouldAcknowledgePastDeliveriesFailedBeforeCompletion() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(4);
+        OrderFailureHandler failureHandler = new OrderFailureHandler(List.of(acknowledger));
+
+        // Act - the delivery 2 is not converted, the delivery 3 fails in the flow, the delivery 4 is discarded
+        acknowledger.orderCompleted(delivery(1), true);
+        failureHandler.handleMessage(new ErrorMessage(new ManualAckListenerExecutionFailedException("Failed to convert the message",
+                new MessageConversionException("Not an order"), channel, 2)));
+        failureHandler.handleMessage(new ErrorMessage(new MessageHandlingException(delivery(3), "Failed to resequence the order")));
+        failureHandler.handleMessage(delivery(4));
+        acknowledger.orderCompleted(delivery(5), true);
+
+        // Assert - no gap is left by the failed deliveries
+        InOrder inOrder = inOrder(channel);
+        inOrder.verify(channel).basicNack(2, false, false);
+        inOrder.verify(channel).basicNack(3, false, true);
+        inOrder.verify(channel).basicNack(4, false, false);
+        inOrder.verify(channel).basicAck(5, true);
+        verifyNoMoreInteractions(channel);
+    }
+
+    @Test
+    void shouldRequeueTransientFailuresAndRejectOnlyUnconvertedDeliveries() throws IOException {
+        // Prepare
+        DeliveryAcknowledger acknowledger = new DeliveryAcknowledger(10);
+        OrderFailureHandler failureHandler = new OrderFailureHandler(List.of(acknowledger));
+
+        // Act - CRM fails the processing, the consumer is interrupted while waiting for a credit, the message is not an order
+        acknowledger.orderCompleted(delivery(1), false);
+        failureHandler.handleMessage(new ErrorMessage(new ManualAckListenerExecutionFailedException("Failed to send the order",
+                new MessageDeliveryException("Interrupted while waiting for the order pipeline capacity"), channel, 2)));
+        failureHandler.handleMessage(new ErrorMessage(new ManualAckListenerExecutionFailedException("Failed to convert the message",
+                new MessageConversionException("Not an order"), channel, 3)));
+
+        // Assert - only the delivery which would never be converted is not redelivered
+        verify(channel).basicNack(1, false, true);
+        verify(channel).basicNack(2, false, true);
+        verify(channel).basicNack(3, false, false);
+        verifyNoMoreInteractions(channel);
+    }
+}
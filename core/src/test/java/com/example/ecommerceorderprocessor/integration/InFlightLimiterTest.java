@@ -0,0 +1,73 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightLimiterTest {
+
+    private final DirectChannel channel = new DirectChannel();
+    private final Message<String> message = MessageBuilder.withPayload("order").build();
+
+    @Test
+    void shouldBlockUntilOrderIsCompleted() {
+        // Prepare
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        limiter.preSend(message, channel);
+
+        // Act
+        CompletableFuture<Message<?>> blocked = CompletableFuture.supplyAsync(() -> limiter.preSend(message, channel));
+
+        // Assert
+        assertThrows(Exception.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, limiter.getInFlight());
+
+        limiter.orderCompleted(message, true);
+
+        await().atMost(5, TimeUnit.SECONDS).until(blocked::isDone);
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldReturnCreditWhenOrderIsNotSent() {
+        // Prepare
+        InFlightLimiter limiter = new InFlightLimiter(1);
+
+        // Act
+        limiter.preSend(message, channel);
+        limiter.afterSendCompletion(message, channel, false, null);
+
+        // Assert
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldReturnCreditWhenOrderFailsOrIsDiscardedAfterSend() {
+        // Prepare
+        InFlightLimiter limiter = new InFlightLimiter(2);
+        OrderFailureHandler failureHandler = new OrderFailureHandler(List.of(limiter));
+        limiter.preSend(message, channel);
+        limiter.afterSendCompletion(message, channel, true, null);
+        limiter.preSend(message, channel);
+        limiter.afterSendCompletion(message, channel, true, null);
+
+        // Act
+        failureHandler.handleMessage(new ErrorMessage(new MessageHandlingException(message, "CRM is down")));
+        int inFlightAfterFailure = limiter.getInFlight();
+        failureHandler.handleMessage(message);
+
+        // Assert
+        assertEquals(1, inFlightAfterFailure);
+        assertEquals(0, limiter.getInFlight());
+    }
+}
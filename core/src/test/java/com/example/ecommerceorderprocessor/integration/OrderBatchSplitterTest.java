@@ -0,0 +1,53 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBatchSplitterTest {
+
+    @Test
+    void shouldSplitBatchIntoMessagesWithOwnHeaders() {
+        // Prepare
+        final Object channel = new Object();
+        final Message<List<String>> batch = MessageBuilder.withPayload(List.of("first", "second"))
+                .setHeader(AmqpHeaders.CHANNEL, channel)
+                .setHeader(AmqpHeaders.DELIVERY_TAG, 2L)
+                .setHeader(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, List.of(
+                        Map.of(AmqpHeaders.DELIVERY_TAG, 1L),
+                        Map.of(AmqpHeaders.DELIVERY_TAG, 2L)))
+                .build();
+
+        final QueueChannel output = new QueueChannel();
+        final OrderBatchSplitter splitter = new OrderBatchSplitter();
+        splitter.setOutputChannel(output);
+
+        // Act
+        splitter.handleMessage(batch);
+
+        // Assert
+        final Message<?> first = output.receive(0);
+        final Message<?> second = output.receive(0);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(output.receive(0));
+
+        assertEquals("first", first.getPayload());
+        assertEquals(1L, first.getHeaders().get(AmqpHeaders.DELIVERY_TAG));
+        assertSame(channel, first.getHeaders().get(AmqpHeaders.CHANNEL));
+        assertFalse(first.getHeaders().containsKey(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS));
+        assertFalse(first.getHeaders().containsKey(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+
+        assertEquals("second", second.getPayload());
+        assertEquals(2L, second.getHeaders().get(AmqpHeaders.DELIVERY_TAG));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderDeduplicatorTest {
+
+    @Test
+    void shouldDropOrderProcessedSuccessfully() {
+        // Prepare
+        OrderDeduplicator deduplicator = new OrderDeduplicator(16, null);
+        deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)), true);
+        deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-2", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)), false);
+
+        // Act
+        boolean redelivered = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+        boolean updated = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP.plusNanos(1000)));
+        boolean shipped = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.SHIPPED, TestDataFactory.SAMPLE_TIMESTAMP));
+        boolean failed = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-2", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        // Assert
+        assertTrue(redelivered);
+        assertFalse(updated);
+        assertFalse(shipped);
+        assertFalse(failed);
+    }
+
+    @Test
+    void shouldRememberOrdersUntilWindowRollsOver() {
+        // Prepare
+        OrderDeduplicator deduplicator = new OrderDeduplicator(16, null);
+
+        // Act: the first 16 orders are the previous generation, then they are dropped
+        for (int i = 0; i < 32; i++) {
+            deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)), true);
+        }
+
+        boolean previousGeneration = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-0", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-32", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)), true);
+
+        // Assert
+        assertTrue(previousGeneration);
+        assertFalse(deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-0", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertTrue(deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-16", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertTrue(deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-32", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+    }
+
+    @Test
+    void shouldNotDropOrdersWithoutUpdatedTimestamp() {
+        // Prepare
+        OrderDeduplicator deduplicator = new OrderDeduplicator(16, null);
+        deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, null)), true);
+
+        // Act
+        boolean redelivered = deduplicator.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, null));
+
+        // Assert
+        assertFalse(redelivered);
+    }
+
+    @Test
+    void shouldRestoreFingerprintsFromSnapshot(@TempDir Path directory) {
+        // Prepare
+        Path snapshotFile = directory.resolve("order-fingerprints.snapshot");
+        OrderDeduplicator deduplicator = new OrderDeduplicator(16, snapshotFile);
+        deduplicator.orderCompleted(new GenericMessage<>(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)), true);
+
+        // Act
+        deduplicator.close();
+        OrderDeduplicator restored = new OrderDeduplicator(16, snapshotFile);
+        OrderDeduplicator otherSettings = new OrderDeduplicator(32, snapshotFile);
+
+        // Assert
+        assertTrue(restored.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertFalse(restored.isDuplicate(TestDataFactory.createSampleOrder("ORD-2", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertFalse(otherSettings.isDuplicate(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP)));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.config.JacksonConfiguration;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.aggregator.ResequencingMessageGroupProcessor;
+import org.springframework.integration.aggregator.ResequencingMessageHandler;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OrderMessageGroupStoreTest {
+
+    private static final Duration GROUP_TTL = Duration.ofSeconds(64);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final OrderMessageGroupStore store = new OrderMessageGroupStore(4, GROUP_TTL, clock::get);
+
+    private static Message<String> orderMessage(String orderId, int sequenceNumber) {
+        return MessageBuilder.withPayload(orderId)
+                .setCorrelationId(orderId)
+                .setSequenceNumber(sequenceNumber)
+                .build();
+    }
+
+    @Test
+    void shouldEvictReleasedGroupsAfterTtl() {
+        // Prepare
+        Message<String> message = orderMessage("order-1", 1);
+        store.addMessageToGroup("order-1", message);
+        store.removeMessagesFromGroup("order-1", message);
+        store.setLastReleasedSequenceNumberForGroup("order-1", 1);
+
+        // Act
+        clock.addAndGet(GROUP_TTL.toMillis() / 2);
+        int evictedBeforeTtl = store.evictExpiredGroups();
+        clock.addAndGet(GROUP_TTL.toMillis());
+        int evictedAfterTtl = store.evictExpiredGroups();
+
+        // Assert
+        assertEquals(0, evictedBeforeTtl);
+        assertEquals(1, evictedAfterTtl);
+        assertEquals(0, store.getMessageGroupCount());
+    }
+
+    @Test
+    void shouldKeepGroupsWithMessages() {
+        // Prepare
+        store.addMessageToGroup("order-1", orderMessage("order-1", 2));
+
+        // Act
+        clock.addAndGet(GROUP_TTL.toMillis() * 2);
+        int evicted = store.evictExpiredGroups();
+
+        // Assert
+        assertEquals(0, evicted);
+        assertEquals(1, store.getMessageGroupCount());
+        assertEquals(1, store.messageGroupSize("order-1"));
+    }
+
+    @Test
+    void shouldResequenceMessagesOfOrder() {
+        // Prepare
+        QueueChannel output = new QueueChannel();
+        ResequencingMessageHandler resequencer = new ResequencingMessageHandler(new ResequencingMessageGroupProcessor(), store, message -> message.getHeaders().get("correlationId"), null);
+        resequencer.setOutputChannel(output);
+        resequencer.setReleasePartialSequences(true);
+        resequencer.setBeanFactory(new DefaultListableBeanFactory());
+        resequencer.afterPropertiesSet();
+
+        // Act
+        resequencer.handleMessage(orderMessage("order-1", 2));
+        resequencer.handleMessage(orderMessage("order-2", 1));
+        resequencer.handleMessage(orderMessage("order-1", 1));
+
+        // Assert
+        assertEquals("order-2", output.receive(0).getPayload());
+        assertEquals(1, output.receive(0).getHeaders().get("sequenceNumber"));
+        assertEquals(2, output.receive(0).getHeaders().get("sequenceNumber"));
+        assertNull(output.receive(0));
+        assertEquals(0, store.getMessageCountForAllMessageGroups());
+    }
+
+    @Test
+    void shouldSpillGroupsBeyondMemoryBudgetAndRecoverThemOnRestart(@TempDir Path spillDirectory) throws IOException {
+        // Prepare
+        List<Message<Order>> messages = new ArrayList<>();
+        OrderMessageGroupStore spillingStore = new OrderMessageGroupStore(4, GROUP_TTL, spillDirectory, 4096, new JacksonConfiguration().objectMapper());
+
+        for (int i = 0; i < 100; i++) {
+            Message<Order> message = MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.PENDING)).build();
+            messages.add(message);
+            spillingStore.addMessageToGroup("ORD-" + i, message);
+        }
+
+        // Act
+        Message<?> loaded = spillingStore.getOneMessageFromGroup("ORD-0");
+        spillingStore.removeMessageGroup("ORD-1");
+        spillingStore.close();
+        OrderMessageGroupStore recoveredStore = new OrderMessageGroupStore(4, GROUP_TTL, spillDirectory, 4096, new JacksonConfiguration().objectMapper());
+        Message<?> recovered = recoveredStore.getOneMessageFromGroup("ORD-42");
+        recoveredStore.close();
+
+        // Assert
+        assertEquals(messages.get(0).getPayload(), loaded.getPayload());
+        assertEquals(99, recoveredStore.getMessageGroupCount());
+        assertEquals(99, recoveredStore.getMessageCountForAllMessageGroups());
+        assertEquals(0, recoveredStore.messageGroupSize("ORD-1"));
+        assertEquals(messages.get(42).getHeaders().getId(), recovered.getHeaders().getId());
+        assertEquals(messages.get(42).getPayload(), recovered.getPayload());
+    }
+
+    @Test
+    void shouldRecoverOnlyAcknowledgedOrdersOnRestart(@TempDir Path spillDirectory) throws IOException {
+        // Prepare - the orders received with the manual acknowledgement carry the AMQP channel
+        Channel channel = mock(Channel.class);
+        List<Message<Order>> acknowledged = new ArrayList<>();
+        OrderMessageGroupStore spillingStore = new OrderMessageGroupStore(4, GROUP_TTL, spillDirectory, 4096, new JacksonConfiguration().objectMapper());
+
+        for (int i = 0; i < 100; i++) {
+            Message<Order> message = MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.CONFIRMED)).build();
+            acknowledged.add(message);
+            spillingStore.addMessageToGroup("ORD-" + i, message);
+            spillingStore.addMessageToGroup("ORD-" + i, MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.UPDATED))
+                    .setHeader(AmqpHeaders.CHANNEL, channel)
+                    .build());
+        }
+
+        for (int i = 0; i < 10; i++) {
+            spillingStore.addMessageToGroup("ORD-U" + i, MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-U" + i, OrderStatusEnum.PENDING))
+                    .setHeader(AmqpHeaders.CHANNEL, channel)
+                    .build());
+        }
+
+        // Act
+        Message<?> loaded = spillingStore.getMessagesForGroup("ORD-7").stream().skip(1).findFirst().orElseThrow();
+        spillingStore.close();
+        OrderMessageGroupStore recoveredStore = new OrderMessageGroupStore(4, GROUP_TTL, spillDirectory, 4096, new JacksonConfiguration().objectMapper());
+        int recoveredGroups = recoveredStore.getMessageGroupCount();
+        int recoveredMessages = recoveredStore.getMessageCountForAllMessageGroups();
+        List<Message<?>> recovered = new ArrayList<>(recoveredStore.getMessagesForGroup("ORD-42"));
+        recoveredStore.close();
+
+        // Assert - the deliveries not acknowledged yet are left to the broker
+        assertSame(channel, loaded.getHeaders().get(AmqpHeaders.CHANNEL));
+        assertEquals(OrderStatusEnum.UPDATED, ((Order) loaded.getPayload()).getStatus());
+        assertEquals(100, recoveredGroups);
+        assertEquals(100, recoveredMessages);
+        assertEquals(0, recoveredStore.messageGroupSize("ORD-U3"));
+        assertEquals(1, recovered.size());
+        assertEquals(acknowledged.get(42).getHeaders().getId(), recovered.get(0).getHeaders().getId());
+        assertEquals(acknowledged.get(42).getPayload(), recovered.get(0).getPayload());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.config.IntegrationConfig;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.AsyncCrmSender;
+import com.example.ecommerceorderprocessor.service.AsyncFinancialWriter;
+import com.example.ecommerceorderprocessor.service.CrmService;
+import com.example.ecommerceorderprocessor.service.OrderProcessor;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.expression.ValueExpression;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class OrderStatusSequencerTest {
+
+    private final QueueChannel output = new QueueChannel();
+    private OrderResequencingMessageHandler resequencer;
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private static Message<Order> orderMessage(OrderStatusEnum status) {
+        return MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-123", status)).build();
+    }
+
+    private OrderStatusEnum receiveStatus(long timeout) {
+        Message<?> message = output.receive(timeout);
+
+        return message != null ? ((Order) message.getPayload()).getStatus() : null;
+    }
+
+    @BeforeEach
+    void setUp() {
+        taskScheduler.initialize();
+
+        OrderMessageGroupStore store = new OrderMessageGroupStore(4, Duration.ofMinutes(10));
+        OrderStatusSequencer sequencer = new OrderStatusSequencer(store);
+        resequencer = new OrderResequencingMessageHandler(sequencer, store, message -> ((Order) message.getPayload()).getOrderId());
+        resequencer.setOutputChannel(output);
+        resequencer.setGroupTimeoutExpression(new ValueExpression<>(200L));
+        resequencer.setSendPartialResultOnExpiry(true);
+        resequencer.setTaskScheduler(taskScheduler);
+        resequencer.setBeanFactory(new DefaultListableBeanFactory());
+        resequencer.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    void shouldReleaseMessagesInOrderImmediately() {
+        // Act
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.PENDING));
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.UPDATED));
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.UPDATED));
+        // the updates are optional
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.CONFIRMED));
+
+        // Assert
+        assertEquals(OrderStatusEnum.PENDING, receiveStatus(0));
+        assertEquals(OrderStatusEnum.UPDATED, receiveStatus(0));
+        assertEquals(OrderStatusEnum.UPDATED, receiveStatus(0));
+        assertEquals(OrderStatusEnum.CONFIRMED, receiveStatus(0));
+    }
+
+    @Test
+    void shouldHoldMessageUntilItsPredecessorArrives() {
+        // Prepare
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.PENDING));
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.PAID));
+
+        // Act
+        OrderStatusEnum released = receiveStatus(0);
+        OrderStatusEnum held = receiveStatus(0);
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.CONFIRMED));
+
+        // Assert
+        assertEquals(OrderStatusEnum.PENDING, released);
+        assertNull(held);
+        assertEquals(OrderStatusEnum.CONFIRMED, receiveStatus(0));
+        assertEquals(OrderStatusEnum.PAID, receiveStatus(0));
+    }
+
+    @Test
+    void shouldReleaseHeldMessagesAfterMaxWait() {
+        // Act
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.SHIPPED));
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.PAID));
+
+        // Assert
+        assertNull(receiveStatus(0));
+        assertEquals(OrderStatusEnum.PAID, receiveStatus(5000));
+        assertEquals(OrderStatusEnum.SHIPPED, receiveStatus(5000));
+    }
+
+    @Test
+    void shouldReleaseNextMessageImmediatelyAfterMaxWait() {
+        // Prepare: the confirmation is lost, the payment is released after the max wait
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.PAID));
+        OrderStatusEnum expired = receiveStatus(5000);
+
+        // Act
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.SHIPPED));
+        resequencer.handleMessage(orderMessage(OrderStatusEnum.CONFIRMED));
+
+        // Assert: the released status is kept, the late confirmation is not held either
+        assertEquals(OrderStatusEnum.PAID, expired);
+        assertEquals(OrderStatusEnum.SHIPPED, receiveStatus(0));
+        assertEquals(OrderStatusEnum.CONFIRMED, receiveStatus(0));
+    }
+
+    @Test
+    void shouldKeepLifecycleOrderUpToCrmSender() {
+        // Prepare - the processed orders are handed over as in the resequencer mode of the pipeline
+        AppConfig appConfig = new AppConfig();
+        appConfig.getPipeline().setOrdering(AppConfig.Ordering.RESEQUENCER);
+        SubscribableChannel processedOrderChannel = (SubscribableChannel) new IntegrationConfig(appConfig, null, null, null, null, null).processedOrderChannel();
+
+        Map<String, List<OrderStatusEnum>> sentStatuses = new ConcurrentHashMap<>();
+        CrmService crmService = mock(CrmService.class);
+        doAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            sentStatuses.computeIfAbsent(order.getOrderId(), orderId -> new CopyOnWriteArrayList<>()).add(order.getStatus());
+
+            return null;
+        }).when(crmService).sendOrderUpdate(any());
+        AsyncCrmSender crmSender = new AsyncCrmSender(appConfig, crmService);
+        OrderProcessor orderProcessor = new OrderProcessor(crmSender, mock(AsyncFinancialWriter.class));
+
+        List<CompletableFuture<Void>> processed = new ArrayList<>();
+        processedOrderChannel.subscribe(message -> processed.add(orderProcessor.process((Order) message.getPayload())));
+        resequencer.setOutputChannel(processedOrderChannel);
+
+        // Act - the pending message releases the held ones at once
+        for (int i = 0; i < 200; i++) {
+            resequencer.handleMessage(MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.CONFIRMED)).build());
+            resequencer.handleMessage(MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.UPDATED)).build());
+            resequencer.handleMessage(MessageBuilder.withPayload(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.PENDING)).build());
+        }
+
+        CompletableFuture.allOf(processed.toArray(CompletableFuture[]::new)).join();
+        crmSender.shutdown();
+
+        // Assert
+        assertEquals(200, sentStatuses.size());
+        sentStatuses.forEach((orderId, statuses) ->
+                assertEquals(List.of(OrderStatusEnum.PENDING, OrderStatusEnum.UPDATED, OrderStatusEnum.CONFIRMED), statuses, orderId));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.ecommerceorderprocessor.integration;
+
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.example.ecommerceorderprocessor.service.TestDataFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderVersionTableTest {
+
+    @Test
+    void shouldDropStatusBeforeLastAppliedOne() {
+        // Prepare
+        OrderVersionTable table = new OrderVersionTable(16);
+        table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        // Act
+        boolean pending = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PENDING, TestDataFactory.SAMPLE_TIMESTAMP.minusMinutes(1)));
+        boolean otherOrder = table.apply(TestDataFactory.createSampleOrder("ORD-2", OrderStatusEnum.PENDING, TestDataFactory.SAMPLE_TIMESTAMP.minusMinutes(1)));
+        boolean shipped = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.SHIPPED, TestDataFactory.SAMPLE_TIMESTAMP.plusMinutes(1)));
+
+        // Assert
+        assertFalse(pending);
+        assertTrue(otherOrder);
+        assertTrue(shipped);
+    }
+
+    @Test
+    void shouldDropUpdateOlderThanLastAppliedOne() {
+        // Prepare
+        OrderVersionTable table = new OrderVersionTable(16);
+        table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.UPDATED, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        // Act
+        boolean older = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.UPDATED, TestDataFactory.SAMPLE_TIMESTAMP.minusSeconds(1)));
+        boolean requeued = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.UPDATED, TestDataFactory.SAMPLE_TIMESTAMP));
+        boolean newer = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.UPDATED, TestDataFactory.SAMPLE_TIMESTAMP.plusNanos(1000)));
+        boolean previous = table.apply(TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.UPDATED, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        // Assert - the same version is retried after a failure, it is not stale
+        assertFalse(older);
+        assertTrue(requeued);
+        assertTrue(newer);
+        assertFalse(previous);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedOrdersWhenFull() {
+        // Prepare
+        OrderVersionTable table = new OrderVersionTable(100);
+        table.apply(TestDataFactory.createSampleOrder("ORD-HOT", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            table.apply(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+            // the hot order is looked up all the time, so it gets the second chance
+            table.apply(TestDataFactory.createSampleOrder("ORD-HOT", OrderStatusEnum.PAID, TestDataFactory.SAMPLE_TIMESTAMP));
+        }
+
+        // Assert
+        assertEquals(100, table.size());
+        assertFalse(table.apply(TestDataFactory.createSampleOrder("ORD-HOT", OrderStatusEnum.PENDING, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertTrue(table.apply(TestDataFactory.createSampleOrder("ORD-0", OrderStatusEnum.PENDING, TestDataFactory.SAMPLE_TIMESTAMP)));
+        assertFalse(table.apply(TestDataFactory.createSampleOrder("ORD-9999", OrderStatusEnum.PENDING, TestDataFactory.SAMPLE_TIMESTAMP)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerceorderprocessor.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void shouldFormatWithoutTrailingZeros() {
+        assertEquals("150.0", Money.toString(1_500_000));
+        assertEquals("150.25", Money.toString(1_502_500));
+        assertEquals("0.0125", Money.toString(125));
+        assertEquals("-0.5", Money.toString(-5_000));
+        assertEquals("0.0", Money.toString(0));
+        assertEquals("-922337203685477.5808", Money.toString(Long.MIN_VALUE));
+        assertEquals("922337203685477.5807", Money.toString(Long.MAX_VALUE));
+    }
+
+    @Test
+    void shouldParseExactly() {
+        assertEquals(1_502_500, Money.parse("150.25"));
+        assertEquals(1_500_000, Money.parse("150"));
+        assertEquals(-125, Money.parse("-0.0125"));
+        assertEquals(167_772_170_100L, Money.parse("16777217.01"));
+        // more than four places are rounded half even, the exponent is left to BigDecimal
+        assertEquals(2, Money.parse("0.00015"));
+        assertEquals(2, Money.parse("0.00025"));
+        assertEquals(15_000_000, Money.parse("1.5E3"));
+        assertEquals(Long.MAX_VALUE, Money.parse("922337203685477.5807"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("922337203685477.5808"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    }
+
+    @Test
+    void shouldReadAndWriteOrderAmounts() throws IOException {
+        // Prepare
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = "{\"orderId\":\"ORD-1\",\"orderTotal\":16777217.01,\"orderPaid\":\"0.1\",\"orderItems\":[{\"price\":0.3}]}";
+
+        // Act
+        Order order = objectMapper.readValue(json, Order.class);
+
+        // Assert
+        assertEquals(167_772_170_100L, order.getOrderTotal());
+        assertEquals(1_000, order.getOrderPaid());
+        assertEquals(3_000, order.getOrderItems().get(0).getPrice());
+
+        String written = objectMapper.writeValueAsString(order);
+        assertTrue(written.contains("\"orderTotal\":16777217.01"));
+        assertTrue(written.contains("\"orderPaid\":0.1"));
+        assertTrue(written.contains("\"price\":0.3"));
+    }
+
+    @Test
+    void shouldReadNullAmountsAsZero() throws IOException {
+        // Prepare
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = "{\"orderId\":\"ORD-1\",\"orderTotal\":null,\"orderPaid\":null,\"orderItems\":[{\"price\":null}]}";
+
+        // Act
+        Order order = objectMapper.readValue(json, Order.class);
+
+        // Assert
+        assertEquals(0, order.getOrderTotal());
+        assertEquals(0, order.getOrderPaid());
+        assertEquals(0, order.getOrderItems().get(0).getPrice());
+    }
+}
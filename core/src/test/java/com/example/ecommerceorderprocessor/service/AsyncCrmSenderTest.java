@@ -0,0 +1,141 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncCrmSenderTest {
+
+    @Mock
+    private CrmService crmService;
+
+    private AsyncCrmSender crmSender;
+
+    @Mock
+    private ExecutorService executor;
+
+    private final Queue<Runnable> requests = new ArrayDeque<>();
+
+    private static Order createOrder(String orderId, String customerId) {
+        Order order = TestDataFactory.createSampleOrder(orderId, OrderStatusEnum.PAID);
+        order.setCustomerId(customerId);
+
+        return order;
+    }
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> requests.add(invocation.getArgument(0))).when(executor).execute(any());
+
+        crmSender = new AsyncCrmSender(crmService, 2, 1, executor);
+    }
+
+    @Test
+    void shouldLimitRequestsInFlight() {
+        // Prepare
+        CompletableFuture<Void> first = crmSender.sendOrderUpdate(createOrder("ORD-1", "CUST-1"));
+        CompletableFuture<Void> second = crmSender.sendOrderUpdate(createOrder("ORD-2", "CUST-2"));
+        CompletableFuture<Void> third = crmSender.sendOrderUpdate(createOrder("ORD-3", "CUST-3"));
+
+        // Act
+        requests.remove().run();
+
+        // Assert
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(2, crmSender.getInFlight());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void shouldLimitRequestsInFlightPerCustomer() {
+        // Prepare
+        crmSender.sendOrderUpdate(createOrder("ORD-1", "CUST-1"));
+        crmSender.sendOrderUpdate(createOrder("ORD-2", "CUST-1"));
+        CompletableFuture<Void> other = crmSender.sendOrderUpdate(createOrder("ORD-3", "CUST-2"));
+
+        // Assert: the waiting update of the first customer does not hold back the other customer
+        assertEquals(2, crmSender.getInFlight());
+        assertEquals(2, requests.size());
+
+        // Act
+        requests.remove().run();
+        requests.remove().run();
+
+        // Assert
+        assertTrue(other.isDone());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void shouldSendUpdatesOfSameOrderInSequence() {
+        // Prepare
+        Order created = createOrder("ORD-1", "CUST-1");
+        created.setStatus(OrderStatusEnum.CONFIRMED);
+        Order paid = createOrder("ORD-1", "CUST-1");
+        doThrow(new RuntimeException("CRM is down")).when(crmService).sendOrderUpdate(created);
+
+        CompletableFuture<Void> first = crmSender.sendOrderUpdate(created);
+        CompletableFuture<Void> second = crmSender.sendOrderUpdate(paid);
+
+        assertEquals(1, requests.size());
+
+        // Act
+        requests.remove().run();
+
+        // Assert: the next update is sent also when the previous one has failed
+        assertTrue(first.isCompletedExceptionally());
+        assertFalse(second.isDone());
+        assertEquals(1, requests.size());
+
+        requests.remove().run();
+
+        assertTrue(second.isDone());
+        assertFalse(second.isCompletedExceptionally());
+        assertEquals(0, crmSender.getInFlight());
+        verify(crmService).sendOrderUpdate(paid);
+    }
+
+    @Test
+    void shouldFailUpdatesWhichCannotBeSentAfterShutdown() {
+        // Prepare
+        CompletableFuture<Void> first = crmSender.sendOrderUpdate(createOrder("ORD-1", "CUST-1"));
+        crmSender.sendOrderUpdate(createOrder("ORD-2", "CUST-2"));
+        CompletableFuture<Void> waiting = crmSender.sendOrderUpdate(createOrder("ORD-3", "CUST-3"));
+        CompletableFuture<Void> next = crmSender.sendOrderUpdate(createOrder("ORD-1", "CUST-1"));
+        doThrow(new RejectedExecutionException("Shut down")).when(executor).execute(any());
+
+        // Act
+        requests.remove().run();
+        CompletableFuture<Void> late = crmSender.sendOrderUpdate(createOrder("ORD-4", "CUST-4"));
+
+        // Assert - none of them is left hanging, nor holds a slot in flight
+        assertFalse(first.isCompletedExceptionally());
+        assertTrue(waiting.isCompletedExceptionally());
+        assertTrue(next.isCompletedExceptionally());
+        assertTrue(late.isCompletedExceptionally());
+        assertEquals(1, crmSender.getInFlight());
+
+        // Act
+        requests.remove().run();
+
+        // Assert
+        assertEquals(0, crmSender.getInFlight());
+    }
+}
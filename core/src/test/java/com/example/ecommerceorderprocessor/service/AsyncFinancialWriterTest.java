@@ -0,0 +1,122 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncFinancialWriterTest {
+
+    @Mock
+    private FinancialService financialService;
+
+    private AsyncFinancialWriter financialWriter;
+
+    @BeforeEach
+    void setUp() {
+        when(financialService.getShards()).thenReturn(1);
+        when(financialService.shardOf(any())).thenReturn(0);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        financialWriter.shutdown();
+    }
+
+    @Test
+    void shouldCompleteOrdersOnlyAfterFsync() throws Exception {
+        // Prepare
+        financialWriter = new AsyncFinancialWriter(financialService, 100, AppConfig.FsyncPolicy.BATCH, Duration.ofSeconds(1));
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+
+        // Act
+        financialWriter.writeOrderToFile(order).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        InOrder inOrder = inOrder(financialService);
+        inOrder.verify(financialService).appendOrder(0, order);
+        inOrder.verify(financialService).flush(0, true);
+    }
+
+    @Test
+    void shouldFailOnlyTheFailedOrder() throws Exception {
+        // Prepare
+        financialWriter = new AsyncFinancialWriter(financialService, 100, AppConfig.FsyncPolicy.NEVER, Duration.ofSeconds(1));
+        Order failedOrder = TestDataFactory.createSampleOrder("ORD-1", OrderStatusEnum.PAID);
+        Order order = TestDataFactory.createSampleOrder("ORD-2", OrderStatusEnum.PAID);
+        doThrow(new IllegalStateException("no unique file name")).when(financialService).appendOrder(0, failedOrder);
+
+        // Act
+        CompletableFuture<Void> failed = financialWriter.writeOrderToFile(failedOrder);
+        CompletableFuture<Void> written = financialWriter.writeOrderToFile(order);
+
+        // Assert
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertDoesNotThrow(() -> written.get(5, TimeUnit.SECONDS));
+        verify(financialService, never()).flush(0, true);
+    }
+
+    @Test
+    void shouldFailOrdersOfBatchWhenWriteFails() throws Exception {
+        // Prepare
+        financialWriter = new AsyncFinancialWriter(financialService, 100, AppConfig.FsyncPolicy.BATCH, Duration.ofSeconds(1));
+        doThrow(new IOException("disk is full")).when(financialService).flush(0, true);
+
+        // Act
+        CompletableFuture<Void> result = financialWriter.writeOrderToFile(TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID));
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void shouldWriteQueuedOrdersInOneBatch() throws Exception {
+        // Prepare
+        financialWriter = new AsyncFinancialWriter(financialService, 100, AppConfig.FsyncPolicy.BATCH, Duration.ofSeconds(1));
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Order first = TestDataFactory.createSampleOrder("ORD-0", OrderStatusEnum.PAID);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(financialService).appendOrder(0, first);
+
+        CompletableFuture<Void> firstResult = financialWriter.writeOrderToFile(first);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        // Act: the orders queued while the writer is busy are written together
+        CompletableFuture<?>[] results = new CompletableFuture<?>[10];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = financialWriter.writeOrderToFile(TestDataFactory.createSampleOrder("ORD-" + (i + 1), OrderStatusEnum.PAID));
+        }
+        release.countDown();
+
+        CompletableFuture.allOf(results).get(5, TimeUnit.SECONDS);
+        firstResult.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        verify(financialService, times(11)).appendOrder(anyInt(), any());
+        verify(financialService, times(2)).flush(0, true);
+    }
+}
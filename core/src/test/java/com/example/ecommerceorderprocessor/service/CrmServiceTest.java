@@ -2,8 +2,10 @@ package com.example.ecommerceorderprocessor.service;
 
 import com.example.crm.model.OrderUpdateRequest;
 import com.example.ecommerceorderprocessor.config.AppConfig;
+import com.example.ecommerceorderprocessor.model.Money;
 import com.example.ecommerceorderprocessor.model.Order;
 import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +19,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -26,6 +30,7 @@ import static org.mockito.Mockito.*;
 class CrmServiceTest {
 
     private static final String API_URL = "http://localhost:4010";
+    private final ObjectMapper objectMapper = new ObjectMapper();
     @Mock
     private AppConfig appConfig;
 
@@ -69,10 +74,11 @@ class CrmServiceTest {
     }
 
     @Test
-    void shouldCorrectlyConvertOrderToCrmRequest() {
+    void shouldCorrectlyConvertOrderToCrmRequest() throws IOException {
         // Prepare
         Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
-        ArgumentCaptor<HttpEntity<OrderUpdateRequest>> requestCaptor = ArgumentCaptor.forClass(HttpEntity.class);
+        order.setOrderTotal(Money.parse("16777217.01"));
+        ArgumentCaptor<HttpEntity<CrmOrderUpdate>> requestCaptor = ArgumentCaptor.forClass(HttpEntity.class);
 
         when(restTemplate.exchange(
                 anyString(),
@@ -92,14 +98,19 @@ class CrmServiceTest {
                 eq(Void.class)
         );
 
-        OrderUpdateRequest request = requestCaptor.getValue().getBody();
+        // the body is written as OrderUpdateRequest
+        String body = objectMapper.writeValueAsString(requestCaptor.getValue().getBody());
+        OrderUpdateRequest request = objectMapper.readValue(body, OrderUpdateRequest.class);
         assertNotNull(request);
         assertEquals(order.getOrderId(), request.getExternalOrderId());
         assertEquals(order.getStatus().getCode(), request.getStatus().getValue());
         assertEquals(order.getCurrencyCode(), request.getFinancials().getCurrencyCode());
-        assertEquals(order.getOrderTotal(), request.getFinancials().getOrderTotal(), 0.001);
-        assertEquals(order.getOrderPaid(), request.getFinancials().getOrderPaid(), 0.001);
+        assertTrue(body.contains("\"orderTotal\":16777217.01,"));
+        assertEquals(150.0f, request.getFinancials().getOrderPaid(), 0.001);
         assertEquals(order.getOrderItems().size(), request.getItems().size());
+        assertEquals(order.getOrderItems().get(0).getProductId(), request.getItems().get(0).getProduct().getId());
+        assertEquals(order.getOrderItems().get(0).getQuantity(), request.getItems().get(0).getQuantity());
+        assertEquals(75.0f, request.getItems().get(0).getPrice(), 0.001);
     }
 
     @Test
@@ -0,0 +1,117 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Money;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinancialColumnarFormatTest {
+
+    private final FinancialColumnarFormat format = new FinancialColumnarFormat();
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldReadWrittenRecords() throws IOException {
+        // Prepare
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        order.setOrderTotal(Money.parse("-16777217.01"));
+        order.setCurrencyCode(null);
+
+        OrderItem unicode = TestDataFactory.createSampleOrderItem();
+        unicode.setProductName("Käse ✓ 😀");
+        unicode.setProductId(null);
+        unicode.setPrice(Money.parse("1234567.89"));
+        unicode.setQuantity(-3);
+
+        order.setOrderItems(List.of(unicode, TestDataFactory.createSampleOrderItem(), TestDataFactory.createSampleOrderItem()));
+        File file = tempDir.resolve("fin_orders.fcol").toFile();
+
+        // Act: the header and the first item in one block, the rest in another
+        FinancialRecordEncoder encoder = format.newEncoder(16);
+        try (FinancialOutputFile outputFile = new StreamFinancialOutputFile(file)) {
+            encoder.encodeHeader();
+            encoder.encode(order, order.getOrderItems().get(0));
+            encoder.writeTo(outputFile);
+            encoder.encode(order, order.getOrderItems().get(1));
+            encoder.encode(order, order.getOrderItems().get(2));
+            encoder.writeTo(outputFile);
+        }
+
+        // Assert
+        List<Object[]> records = new ArrayList<>();
+        FinancialColumnarFormat.read(file, records::add);
+
+        assertEquals(3, records.size());
+        assertArrayEquals(new Object[]{"ORD-123", "Käse ✓ 😀", null, -3, Money.parse("1234567.89"), Money.parse("-16777217.01"), Money.parse("150.0"), null}, records.get(0));
+        assertArrayEquals(new Object[]{"ORD-123", "Sample Product", "PROD-789", 2, Money.parse("75.0"), Money.parse("-16777217.01"), Money.parse("150.0"), null}, records.get(1));
+        assertArrayEquals(records.get(1), records.get(2));
+        assertEquals(3, format.countRecords(file));
+    }
+
+    @Test
+    void shouldRollBackToMark() throws IOException {
+        // Prepare
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        Order rolledBackOrder = TestDataFactory.createSampleOrder("ORD-124", OrderStatusEnum.PAID);
+        rolledBackOrder.setOrderTotal(Money.parse("1.0"));
+        File file = tempDir.resolve("fin_orders.fcol").toFile();
+
+        // Act: the values of the rolled back row must not be the base of the next row
+        FinancialRecordEncoder encoder = format.newEncoder(16);
+        try (FinancialOutputFile outputFile = new StreamFinancialOutputFile(file)) {
+            encoder.encodeHeader();
+            encoder.encode(order, order.getOrderItems().get(0));
+            encoder.mark();
+            encoder.encode(rolledBackOrder, rolledBackOrder.getOrderItems().get(0));
+            encoder.rollback();
+            encoder.encode(order, order.getOrderItems().get(0));
+            encoder.writeTo(outputFile);
+        }
+
+        // Assert
+        List<Object[]> records = new ArrayList<>();
+        FinancialColumnarFormat.read(file, records::add);
+
+        assertEquals(2, records.size());
+        assertArrayEquals(records.get(0), records.get(1));
+        assertEquals("ORD-123", records.get(1)[0]);
+        assertEquals(order.getOrderTotal(), records.get(1)[5]);
+    }
+
+    @Test
+    void shouldSkipTornBlock() throws IOException {
+        // Prepare
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        File file = tempDir.resolve("fin_orders.fcol").toFile();
+
+        FinancialRecordEncoder encoder = format.newEncoder(16);
+        try (FinancialOutputFile outputFile = new StreamFinancialOutputFile(file)) {
+            encoder.encodeHeader();
+            encoder.encode(order, order.getOrderItems().get(0));
+            encoder.writeTo(outputFile);
+            encoder.encode(order, order.getOrderItems().get(0));
+            encoder.writeTo(outputFile);
+        }
+
+        // Act: the last block is torn
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 3), StandardOpenOption.TRUNCATE_EXISTING);
+
+        // Assert
+        assertEquals(1, format.countRecords(file));
+    }
+}
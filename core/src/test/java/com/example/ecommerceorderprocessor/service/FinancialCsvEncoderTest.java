@@ -0,0 +1,70 @@
+package com.example.ecommerceorderprocessor.service;
+
+import com.example.ecommerceorderprocessor.model.Money;
+import com.example.ecommerceorderprocessor.model.Order;
+import com.example.ecommerceorderprocessor.model.OrderItem;
+import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import com.opencsv.CSVWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FinancialCsvEncoderTest {
+
+    private static String encode(Order order) {
+        FinancialCsvEncoder encoder = new FinancialCsvEncoder(16);
+        encoder.encodeHeader();
+        order.getOrderItems().forEach(orderItem -> encoder.encode(order, orderItem));
+
+        return new String(encoder.buffer(), 0, encoder.length(), StandardCharsets.UTF_8);
+    }
+
+    private static String encodeWithOpencsv(Order order) {
+        StringWriter writer = new StringWriter();
+        CSVWriter csvWriter = new CSVWriter(writer, CSVWriter.DEFAULT_SEPARATOR, CSVWriter.NO_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END);
+        csvWriter.writeNext(FinancialCsvEncoder.COLUMNS);
+
+        for (OrderItem orderItem : order.getOrderItems()) {
+            csvWriter.writeNext(new String[]{
+                    order.getOrderId(),
+                    orderItem.getProductName(),
+                    orderItem.getProductId(),
+                    String.valueOf(orderItem.getQuantity()),
+                    Money.toString(orderItem.getPrice()),
+                    Money.toString(order.getOrderTotal()),
+                    Money.toString(order.getOrderPaid()),
+                    order.getCurrencyCode()
+            });
+        }
+
+        return writer.toString();
+    }
+
+    @Test
+    void shouldEncodeAsOpencsv() {
+        // Prepare
+        Order order = TestDataFactory.createSampleOrder("ORD,123", OrderStatusEnum.PAID);
+        order.setOrderTotal(Money.parse("10000000000.0"));
+        order.setOrderPaid(Money.parse("-0.0125"));
+        order.setCurrencyCode(null);
+
+        OrderItem escaped = TestDataFactory.createSampleOrderItem();
+        escaped.setProductName("Product \"A\", multi\nline\r\\ 'quoted' \u0000");
+        escaped.setPrice(Money.parse("0.1"));
+        escaped.setQuantity(-3);
+
+        OrderItem unicode = TestDataFactory.createSampleOrderItem();
+        unicode.setProductName("Käse ✓ 😀");
+        unicode.setProductId(null);
+        unicode.setPrice(Money.parse("1234567.89"));
+
+        order.setOrderItems(List.of(escaped, unicode, TestDataFactory.createSampleOrderItem()));
+
+        // Act & Assert
+        assertEquals(encodeWithOpencsv(order), encode(order));
+    }
+}
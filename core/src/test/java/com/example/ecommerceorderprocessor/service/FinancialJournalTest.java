@@ -0,0 +1,67 @@
+package com.example.ecommerceorderprocessor.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinancialJournalTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void shouldRecoverLastValidRecord() throws IOException {
+        // Prepare
+        try (FinancialJournal journal = new FinancialJournal(tempDir)) {
+            journal.opened("fin_orders_1.csv");
+            journal.committed("fin_orders_1.csv", 100, 1, "ORD-1");
+            journal.committed("fin_orders_1.csv", 200, 2, "ORD-2");
+        }
+
+        // the record torn by the crash
+        Files.writeString(tempDir.resolve(FinancialJournal.FILE_NAME), "C\tfin_orders_1.csv\t30", StandardOpenOption.APPEND);
+
+        // Act
+        Optional<FinancialJournal.Entry> entry;
+        try (FinancialJournal journal = new FinancialJournal(tempDir)) {
+            entry = journal.recover();
+            journal.committed("fin_orders_1.csv", 300, 3, "ORD-3");
+        }
+
+        // Assert
+        assertEquals(Optional.of(new FinancialJournal.Entry(true, "fin_orders_1.csv", 200, 2)), entry);
+
+        List<String> lines = Files.readAllLines(tempDir.resolve(FinancialJournal.FILE_NAME));
+        assertEquals(4, lines.size());
+        assertTrue(lines.getLast().startsWith("C\tfin_orders_1.csv\t300\t3\tORD-3\t"));
+    }
+
+    @Test
+    void shouldSkipCorruptedRecord() throws IOException {
+        // Prepare
+        try (FinancialJournal journal = new FinancialJournal(tempDir)) {
+            journal.committed("fin_orders_1.csv", 100, 1, "ORD-1");
+            journal.opened("fin_orders_2.csv");
+        }
+
+        Path file = tempDir.resolve(FinancialJournal.FILE_NAME);
+        Files.writeString(file, Files.readString(file).replace("O\tfin_orders_2", "O\tfin_orders_3"));
+
+        // Act
+        Optional<FinancialJournal.Entry> entry;
+        try (FinancialJournal journal = new FinancialJournal(tempDir)) {
+            entry = journal.recover();
+        }
+
+        // Assert
+        assertEquals(Optional.of(new FinancialJournal.Entry(true, "fin_orders_1.csv", 100, 1)), entry);
+    }
+}
@@ -13,9 +13,21 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
@@ -38,6 +50,8 @@ class FinancialServiceTest {
         when(financialConfig.getOutputDirectory()).thenReturn(tempDir.toString());
         when(financialConfig.getMaxRecordsPerFile()).thenReturn(1000);
         when(financialConfig.getFileNamePattern()).thenReturn("fin_orders_{datetime:ddMMyyyyHHmmss}.csv");
+        when(financialConfig.getShards()).thenReturn(1);
+        when(financialConfig.getFormat()).thenReturn(AppConfig.ExportFormat.CSV);
     }
 
     @Test
@@ -59,6 +73,26 @@ class FinancialServiceTest {
         assertEquals(3, lines.size()); // Header + two data lines
     }
 
+    @Test
+    void shouldContinueWritingIntoRecentlyModifiedFile() throws IOException {
+        // Prepare
+        Path existingFile = tempDir.resolve("fin_orders_01012025000000.csv");
+        Files.write(existingFile, List.of("order_id,product_name,product_id,quantity,product_price,order_total,order_paid_amount,currency_code", "ORD-1,Product,P-1,1,10.0,10.0,10.0,USD"));
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+
+        // Act
+        financialService.writeOrderToFile(order);
+        financialService.writeOrderToFile(order);
+
+        // Assert
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+
+        List<String> lines = Files.readAllLines(existingFile);
+        assertEquals(4, lines.size()); // Header + existing line + two new lines
+    }
+
     @Test
     void shouldCreateNewFileWhenLimitReached() {
         // Prepare
@@ -67,14 +101,8 @@ class FinancialServiceTest {
         Order secondOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.CANCELLED);
 
         // Act
+        // NB! within the same second, the second file gets a sequence suffix
         financialService.writeOrderToFile(firstOrder);
-
-        // let's sleep a bit, otherwise the files will have same name
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException ignore) {
-        }
-
         financialService.writeOrderToFile(secondOrder);
 
         // Assert
@@ -101,6 +129,261 @@ class FinancialServiceTest {
         assertTrue(lines.getFirst().contains("order_id,product_name,product_id"));
     }
 
+    @Test
+    void shouldTruncateMemoryMappedFileOnShutdown() throws IOException {
+        // Prepare
+        when(financialConfig.isMemoryMapped()).thenReturn(true);
+        when(financialConfig.getMappedRecordSize()).thenReturn(256);
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+
+        // Act
+        financialService.writeOrderToFile(order);
+        financialService.writeOrderToFile(order);
+        financialService.shutdown();
+
+        // Assert
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+
+        List<String> lines = Files.readAllLines(files[0].toPath());
+        assertEquals(3, lines.size()); // Header + two data lines
+        assertTrue(lines.get(2).startsWith("ORD-123,"));
+    }
+
+    @Test
+    void shouldTruncateUnwrittenEndOfMemoryMappedFile() throws IOException {
+        // Prepare: the file left by the crash while being written through the memory mapping
+        Path existingFile = tempDir.resolve("fin_orders_01012025000000.csv");
+        Files.write(existingFile, List.of("order_id,product_name,product_id,quantity,product_price,order_total,order_paid_amount,currency_code", "ORD-1,Product,P-1,1,10.0,10.0,10.0,USD"));
+        Files.write(existingFile, new byte[10000], StandardOpenOption.APPEND);
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+
+        // Act
+        financialService.writeOrderToFile(order);
+
+        // Assert
+        List<String> lines = Files.readAllLines(existingFile);
+        assertEquals(3, lines.size()); // Header + existing line + new line
+        assertTrue(lines.get(2).startsWith("ORD-123,"));
+    }
+
+    @Test
+    void shouldRecoverLastCommittedFileFromJournal() throws IOException {
+        // Prepare
+        when(financialConfig.isJournal()).thenReturn(true);
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        financialService.writeOrderToFile(order);
+
+        // the crash while writing the next order
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        Files.writeString(files[0].toPath(), "ORD-124,Torn Prod", StandardOpenOption.APPEND);
+
+        // a newer file not known to the journal is not picked up
+        Path newerFile = tempDir.resolve("fin_orders_31129999235959.csv");
+        Files.writeString(newerFile, "garbage");
+
+        // Act
+        FinancialService restartedFinancialService = new FinancialService(appConfig);
+        restartedFinancialService.writeOrderToFile(order);
+        restartedFinancialService.shutdown();
+
+        // Assert
+        List<String> lines = Files.readAllLines(files[0].toPath());
+        assertEquals(3, lines.size()); // Header + two data lines, without the torn one
+        assertTrue(lines.get(1).startsWith("ORD-123,"));
+        assertTrue(lines.get(2).startsWith("ORD-123,"));
+        assertEquals("garbage", Files.readString(newerFile));
+    }
+
+    @Test
+    void shouldRollBackOnlyFailedOrderOfBatch() throws IOException {
+        // Prepare
+        when(financialConfig.isJournal()).thenReturn(true);
+        Order firstOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        Order failedOrder = TestDataFactory.createSampleOrder("ORD-124", OrderStatusEnum.PAID);
+        failedOrder.setOrderItems(Arrays.asList(TestDataFactory.createSampleOrderItem(), null));
+        Order lastOrder = TestDataFactory.createSampleOrder("ORD-125", OrderStatusEnum.PAID);
+
+        // Act
+        financialService.appendOrder(0, firstOrder);
+        assertThrows(NullPointerException.class, () -> financialService.appendOrder(0, failedOrder));
+        financialService.appendOrder(0, lastOrder);
+        financialService.flush(0, true);
+        financialService.shutdown();
+
+        // Assert
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+
+        List<String> lines = Files.readAllLines(files[0].toPath());
+        assertEquals(3, lines.size()); // Header + the lines of the first and the last order
+        assertTrue(lines.get(1).startsWith("ORD-123,"));
+        assertTrue(lines.get(2).startsWith("ORD-125,"));
+    }
+
+    @Test
+    void shouldIndexPartitionedFilesInManifest() throws Exception {
+        // Prepare
+        when(financialConfig.isManifest()).thenReturn(true);
+        when(financialConfig.getPartitionPattern()).thenReturn("yyyy/MM/dd");
+        when(financialConfig.getMaxRecordsPerFile()).thenReturn(1);
+        when(financialConfig.getFileNamePattern()).thenReturn("fin_orders_{datetime:ddMMyyyyHHmmssSSS}.csv");
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+
+        // Act
+        financialService.writeOrderToFile(order);
+        Thread.sleep(5);
+        financialService.writeOrderToFile(order);
+        financialService.shutdown();
+
+        // Assert
+        Path partition = tempDir.resolve(LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd")));
+        File[] files = partition.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(2, files.length);
+
+        List<String[]> manifest = Files.readAllLines(tempDir.resolve(FinancialManifest.FILE_NAME)).stream()
+                .map(line -> line.split("\t"))
+                .toList();
+        assertEquals(3, manifest.size());
+        assertEquals("open", manifest.get(0)[3]);
+        assertEquals(manifest.get(0)[0], manifest.get(1)[0]);
+        assertEquals("1", manifest.get(1)[2]);
+        assertEquals("sealed", manifest.get(1)[3]);
+        assertEquals("open", manifest.get(2)[3]);
+        assertTrue(Files.exists(tempDir.resolve(manifest.get(2)[0])));
+    }
+
+    @Test
+    void shouldSealRotatedFiles() throws Exception {
+        // Prepare
+        when(financialConfig.isSeal()).thenReturn(true);
+        when(financialConfig.getSealThreads()).thenReturn(1);
+        when(financialConfig.getSealQueueCapacity()).thenReturn(1);
+        when(financialConfig.getMaxRecordsPerFile()).thenReturn(1);
+        when(financialConfig.getFileNamePattern()).thenReturn("fin_orders_{datetime:ddMMyyyyHHmmssSSS}.csv");
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        // the escaped line feed is within the row, not another row
+        order.getOrderItems().get(0).setProductName("Sample\nProduct");
+
+        // Act
+        financialService.writeOrderToFile(order);
+        Thread.sleep(5);
+        financialService.writeOrderToFile(order);
+        financialService.shutdown();
+
+        // Assert: the first file is sealed, the current one is not
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(3, files.length);
+
+        File compressed = Arrays.stream(files).filter(file -> file.getName().endsWith(".csv.gz")).findFirst().orElseThrow();
+        Properties seal = new Properties();
+        try (InputStream input = Files.newInputStream(Path.of(compressed.getPath() + ".seal"))) {
+            seal.load(input);
+        }
+        assertEquals(compressed.getName(), seal.getProperty("file"));
+        assertEquals("1", seal.getProperty("rows"));
+        assertEquals(String.valueOf(compressed.length()), seal.getProperty("size"));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(compressed.toPath()))), seal.getProperty("sha256"));
+
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(compressed.toPath()))) {
+            List<String> lines = new String(input.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            assertEquals(3, lines.size()); // Header + one data line, split by the escaped line feed
+        }
+    }
+
+    @Test
+    void shouldSealFilesLeftUnsealedOnlyFromManifest() throws Exception {
+        // Prepare - a run without the sealing leaves a rotated file and the current one
+        when(financialConfig.isManifest()).thenReturn(true);
+        when(financialConfig.getMaxRecordsPerFile()).thenReturn(1);
+        when(financialConfig.getFileNamePattern()).thenReturn("fin_orders_{datetime:ddMMyyyyHHmmssSSS}.csv");
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        financialService.writeOrderToFile(order);
+        Thread.sleep(5);
+        financialService.writeOrderToFile(order);
+        financialService.shutdown();
+
+        List<String> manifest = Files.readAllLines(tempDir.resolve(FinancialManifest.FILE_NAME));
+        String rotatedFileName = manifest.get(0).split("\t")[0];
+        Path unindexedFile = Files.writeString(tempDir.resolve("fin_orders_01012020000000000.csv"), "not in the manifest");
+
+        when(financialConfig.isSeal()).thenReturn(true);
+        when(financialConfig.getSealThreads()).thenReturn(1);
+        when(financialConfig.getSealQueueCapacity()).thenReturn(1);
+        FinancialService restartedService = new FinancialService(appConfig);
+
+        // Act
+        restartedService.writeOrderToFile(order);
+        restartedService.shutdown();
+
+        // Assert
+        assertTrue(FinancialFileSealer.isSealed(tempDir.resolve(rotatedFileName)));
+        assertFalse(Files.exists(tempDir.resolve(rotatedFileName)));
+        assertTrue(Files.exists(unindexedFile));
+        assertFalse(FinancialFileSealer.isSealed(unindexedFile));
+    }
+
+    @Test
+    void shouldWriteOrdersIntoFilesOfTheirShards() throws IOException {
+        // Prepare
+        when(financialConfig.getShards()).thenReturn(2);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            orders.add(TestDataFactory.createSampleOrder("ORD-" + i, OrderStatusEnum.PAID));
+        }
+
+        // Act
+        for (Order order : orders) {
+            financialService.writeOrderToFile(order);
+        }
+
+        // Assert
+        for (int shard = 0; shard < 2; shard++) {
+            File[] files = tempDir.resolve("shard-" + shard).toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+            assertNotNull(files);
+            assertEquals(1, files.length);
+            assertTrue(files[0].getName().endsWith("_" + shard + ".csv"));
+
+            List<String> lines = Files.readAllLines(files[0].toPath());
+            int currentShard = shard;
+            List<String> expected = orders.stream()
+                    .filter(order -> financialService.shardOf(order) == currentShard)
+                    .map(Order::getOrderId)
+                    .toList();
+            assertEquals(expected, lines.subList(1, lines.size()).stream().map(line -> line.substring(0, line.indexOf(','))).toList());
+        }
+    }
+
+    @Test
+    void shouldContinueWritingIntoColumnarFile() throws IOException {
+        // Prepare
+        when(financialConfig.getFormat()).thenReturn(AppConfig.ExportFormat.COLUMNAR);
+        Order firstOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        Order secondOrder = TestDataFactory.createSampleOrder("ORD-124", OrderStatusEnum.PAID);
+
+        // Act: the state is restored from the file in between
+        financialService.writeOrderToFile(firstOrder);
+        financialService.shutdown();
+        financialService = new FinancialService(appConfig);
+        financialService.writeOrderToFile(secondOrder);
+        financialService.shutdown();
+
+        // Assert
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".fcol"));
+
+        List<Object[]> records = new ArrayList<>();
+        FinancialColumnarFormat.read(files[0], records::add);
+        assertEquals(List.of("ORD-123", "ORD-124"), records.stream().map(record -> record[0]).toList());
+    }
+
     @Test
     void shouldGenerateCorrectFileName() {
         // Prepare
@@ -153,6 +436,28 @@ class FinancialServiceTest {
         assertEquals(3, lines.size()); // Header + two data lines (one per item)
     }
 
+    @Test
+    void shouldWriteAllItemsOfLargeOrder() throws IOException {
+        // Prepare: the order fills several files within the same second
+        when(financialConfig.getMaxRecordsPerFile()).thenReturn(5_000);
+        Order order = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        order.setOrderItems(Collections.nCopies(20_000, TestDataFactory.createSampleOrderItem()));
+
+        // Act
+        financialService.writeOrderToFile(order);
+
+        // Assert
+        File[] files = tempDir.toFile().listFiles((dir, name) -> name.startsWith("fin_orders_"));
+        assertNotNull(files);
+        assertEquals(4, files.length);
+
+        for (File file : files) {
+            List<String> lines = Files.readAllLines(file.toPath());
+            assertEquals(5_001, lines.size()); // Header + a data line per item
+            assertEquals(lines.get(1), lines.get(5_000));
+        }
+    }
+
     @Test
     void shouldHandleNonExistentOutputDirectory() {
         // Prepare
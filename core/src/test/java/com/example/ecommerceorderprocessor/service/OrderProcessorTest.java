@@ -2,26 +2,59 @@ package com.example.ecommerceorderprocessor.service;
 
 import com.example.ecommerceorderprocessor.model.Order;
 import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class OrderProcessorTest {
 
     @Mock
-    private CrmService crmService;
+    private AsyncCrmSender crmSender;
 
     @Mock
-    private FinancialService financialService;
+    private AsyncFinancialWriter financialWriter;
 
     @InjectMocks
     private OrderProcessor orderProcessor;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(crmSender.sendOrderUpdate(any())).thenReturn(CompletableFuture.completedFuture(null));
+        lenient().when(financialWriter.writeOrderToFile(any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void shouldFailWhenFinancialFails() {
+        Order paidOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        when(financialWriter.writeOrderToFile(paidOrder)).thenReturn(CompletableFuture.failedFuture(new RuntimeException("disk is full")));
+
+        CompletableFuture<Void> result = orderProcessor.process(paidOrder);
+
+        assertThrows(Exception.class, result::join);
+        verify(crmSender).sendOrderUpdate(paidOrder);
+    }
+
+    @Test
+    void shouldSendOrderToFinancialEvenIfCrmFails() {
+        Order paidOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
+        when(crmSender.sendOrderUpdate(paidOrder)).thenReturn(CompletableFuture.failedFuture(new RuntimeException("CRM is down")));
+
+        CompletableFuture<Void> result = orderProcessor.process(paidOrder);
+
+        assertThrows(Exception.class, result::join);
+        verify(financialWriter).writeOrderToFile(paidOrder);
+    }
+
     @Test
     void shouldNotSendOtherStatusesToFinancial() {
         // Test statuses that should not go to financial
@@ -29,8 +62,8 @@ class OrderProcessorTest {
 
         for (OrderStatusEnum status : nonFinancialStatuses) {
             Order order = TestDataFactory.createSampleOrder("ORD-123", status);
-            orderProcessor.process(order);
-            verify(financialService, never()).writeOrderToFile(order);
+            orderProcessor.process(order).join();
+            verify(financialWriter, never()).writeOrderToFile(order);
         }
     }
 
@@ -39,22 +72,22 @@ class OrderProcessorTest {
         // Test each status
         for (OrderStatusEnum status : OrderStatusEnum.values()) {
             Order order = TestDataFactory.createSampleOrder("ORD-123", status);
-            orderProcessor.process(order);
-            verify(crmService, times(1)).sendOrderUpdate(order);
+            orderProcessor.process(order).join();
+            verify(crmSender, times(1)).sendOrderUpdate(order);
         }
     }
 
     @Test
     void shouldSendOnlyCancelledOrdersToFinancial() {
         Order cancelledOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.CANCELLED);
-        orderProcessor.process(cancelledOrder);
-        verify(financialService, times(1)).writeOrderToFile(cancelledOrder);
+        orderProcessor.process(cancelledOrder).join();
+        verify(financialWriter, times(1)).writeOrderToFile(cancelledOrder);
     }
 
     @Test
     void shouldSendOnlyPaidOrdersToFinancial() {
         Order paidOrder = TestDataFactory.createSampleOrder("ORD-123", OrderStatusEnum.PAID);
-        orderProcessor.process(paidOrder);
-        verify(financialService, times(1)).writeOrderToFile(paidOrder);
+        orderProcessor.process(paidOrder).join();
+        verify(financialWriter, times(1)).writeOrderToFile(paidOrder);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.ecommerceorderprocessor.service;
 
+import com.example.ecommerceorderprocessor.model.Money;
 import com.example.ecommerceorderprocessor.model.Order;
 import com.example.ecommerceorderprocessor.model.OrderItem;
 import com.example.ecommerceorderprocessor.model.OrderStatusEnum;
@@ -9,6 +10,9 @@ import java.util.List;
 
 public class TestDataFactory {
 
+    // a fixed updatedTimestamp, for the tests comparing the versions of the orders
+    public static final LocalDateTime SAMPLE_TIMESTAMP = LocalDateTime.of(2025, 1, 1, 12, 0);
+
     public static Order createEmptyOrder(OrderStatusEnum status) {
         Order order = createSampleOrder("ORD-123", status);
         order.setOrderItems(List.of());
@@ -22,8 +26,8 @@ public class TestDataFactory {
         order.setCustomerId("CUST-456");
         order.setStatus(status);
         order.setCurrencyCode("USD");
-        order.setOrderTotal(150.0f);
-        order.setOrderPaid(150.0f);
+        order.setOrderTotal(Money.parse("150.0"));
+        order.setOrderPaid(Money.parse("150.0"));
         order.setCreationTimestamp(LocalDateTime.now());
         order.setUpdatedTimestamp(LocalDateTime.now());
         order.setOrderItems(List.of(createSampleOrderItem()));
@@ -31,11 +35,18 @@ public class TestDataFactory {
         return order;
     }
 
+    public static Order createSampleOrder(String orderId, OrderStatusEnum status, LocalDateTime updatedTimestamp) {
+        Order order = createSampleOrder(orderId, status);
+        order.setUpdatedTimestamp(updatedTimestamp);
+
+        return order;
+    }
+
     public static OrderItem createSampleOrderItem() {
         OrderItem item = new OrderItem();
         item.setProductId("PROD-789");
         item.setProductName("Sample Product");
-        item.setPrice(75.0f);
+        item.setPrice(Money.parse("75.0"));
         item.setQuantity(2);
 
         return item;